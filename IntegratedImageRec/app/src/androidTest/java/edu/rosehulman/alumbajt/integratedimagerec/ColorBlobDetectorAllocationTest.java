@@ -0,0 +1,114 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import android.os.Debug;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that ColorBlobDetector.process stops allocating once its pools are warm.
+ *
+ * The OpenCV binding for findContours still creates a MatOfPoint (plus a temporary Mat and list)
+ * for every raw contour on every call, and the detector can't avoid that without native code. So
+ * the allocation test counts what process allocates and subtracts what a bare findContours call
+ * on the same mask allocates. Everything else (kernel, scale, filtered contours, stats, area and
+ * point buffers) has to come out at zero. Tracking mode is left off, since it takes a submat of
+ * the frame each call.
+ *
+ * Needs the OpenCV native library packaged with the app (OpenCVLoader.initDebug), skipped otherwise.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ColorBlobDetectorAllocationTest {
+    private static final int WARM_UP_FRAMES = 5;
+    private static final int MEASURED_FRAMES = 20;
+
+    private ColorBlobDetector mDetector;
+    private Mat mFrame;
+
+    @BeforeClass
+    public static void loadOpenCv() {
+        assumeTrue("OpenCV native library not packaged", OpenCVLoader.initDebug());
+    }
+
+    @Before
+    public void setUp() {
+        // Three red blocks on black, all large enough to pass the area filter.
+        mFrame = new Mat(480, 640, CvType.CV_8UC4, new Scalar(0, 0, 0, 255));
+        Scalar red = new Scalar(255, 0, 0, 255);
+        Imgproc.rectangle(mFrame, new Point(40, 40), new Point(200, 200), red, -1);
+        Imgproc.rectangle(mFrame, new Point(300, 60), new Point(380, 140), red, -1);
+        Imgproc.rectangle(mFrame, new Point(420, 300), new Point(600, 440), red, -1);
+
+        mDetector = new ColorBlobDetector();
+        mDetector.setHsvColor(new Scalar(0, 255, 255, 0));
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            mDetector.process(mFrame);
+        }
+        assertEquals(3, mDetector.getContours().size());
+    }
+
+    @Test
+    public void poolsStopGrowingAfterWarmUp() {
+        int warmPoolSize = mDetector.getPoolSize();
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            mDetector.process(mFrame);
+            assertEquals("pool grew on frame " + i, warmPoolSize, mDetector.getPoolSize());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void processAllocatesNothingBeyondFindContours() {
+        // Same mask the extractor runs findContours on.
+        Mat dilated = new Mat();
+        Imgproc.dilate(mDetector.mMask, dilated, new Mat());
+        Mat hierarchy = new Mat();
+        List<MatOfPoint> rawContours = new ArrayList<MatOfPoint>();
+        findAndReleaseContours(dilated, rawContours, hierarchy);
+
+        for (int i = 0; i < MEASURED_FRAMES; i++) {
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+            findAndReleaseContours(dilated, rawContours, hierarchy);
+            Debug.stopAllocCounting();
+            int findContoursAllocs = Debug.getThreadAllocCount();
+
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+            mDetector.process(mFrame);
+            Debug.stopAllocCounting();
+            int processAllocs = Debug.getThreadAllocCount();
+
+            assertTrue("frame " + i + ": process allocated " + processAllocs + " objects, findContours alone "
+                    + findContoursAllocs, processAllocs - findContoursAllocs <= 0);
+        }
+    }
+
+    /**
+     * What ContourExtractor does with the raw findContours output each frame.
+     */
+    private static void findAndReleaseContours(Mat mask, List<MatOfPoint> rawContours, Mat hierarchy) {
+        Imgproc.findContours(mask, rawContours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+        for (int i = 0; i < rawContours.size(); i++) {
+            rawContours.get(i).release();
+        }
+        rawContours.clear();
+    }
+}
@@ -0,0 +1,122 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Predict / correct / confidence behaviour of ConeTracker on the bundled OpenCV KalmanFilter.
+ *
+ * Needs the OpenCV native library packaged with the app (OpenCVLoader.initDebug), skipped otherwise.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConeTrackerTest {
+    private static final long FRAME_NS = 100000000L;
+    private static final long START_NS = 5000000000L;
+
+    private ConeTracker mTracker;
+
+    @BeforeClass
+    public static void loadOpenCv() {
+        assumeTrue("OpenCV native library not packaged", OpenCVLoader.initDebug());
+    }
+
+    @Before
+    public void setUp() {
+        mTracker = new ConeTracker();
+    }
+
+    /**
+     * Feeds detections every FRAME_NS, with the left/right location moving at velocity per second.
+     *
+     * @return Capture time of the last detection.
+     */
+    private long feed(int frames, double startLocation, double velocity) {
+        long timeNs = START_NS;
+        for (int i = 0; i < frames; i++) {
+            timeNs = START_NS + i * FRAME_NS;
+            mTracker.update(true, startLocation + velocity * (timeNs - START_NS) / 1e9, 0.1, 0.05, timeNs);
+        }
+        return timeNs;
+    }
+
+    @Test
+    public void notTrackingUntilFirstDetection() {
+        assertFalse(mTracker.isTracking());
+        assertEquals(0, mTracker.getConfidence(), 0);
+        mTracker.update(false, 0, 0, 0, START_NS);
+        assertFalse(mTracker.isTracking());
+
+        mTracker.update(true, 0.2, 0.1, 0.05, START_NS);
+        assertTrue(mTracker.isTracking());
+        assertEquals(0.2, mTracker.getLeftRightLocation(), 1e-9);
+        assertEquals(0.1, mTracker.getTopBottomLocation(), 1e-9);
+        assertEquals(0.05, mTracker.getSizePercentage(), 1e-9);
+        assertTrue(mTracker.getConfidence() > 0);
+    }
+
+    @Test
+    public void learnsVelocityAndPredictsAhead() {
+        long lastNs = feed(15, -0.5, 1.0);
+        assertEquals(1.0, mTracker.getLeftRightVelocity(), 0.2);
+        double lastLocation = -0.5 + 1.0 * (lastNs - START_NS) / 1e9;
+        mTracker.predict(lastNs + 2 * FRAME_NS);
+        assertEquals(lastLocation + 0.2, mTracker.getLeftRightLocation(), 0.05);
+    }
+
+    @Test
+    public void correctSmoothsNoise() {
+        for (int i = 0; i < 20; i++) {
+            double noise = i % 2 == 0 ? 0.05 : -0.05;
+            mTracker.update(true, 0.3 + noise, 0.1, 0.05, START_NS + i * FRAME_NS);
+        }
+        assertEquals(0.3, mTracker.getLeftRightLocation(), 0.03);
+        assertEquals(0, mTracker.getLeftRightVelocity(), 0.3);
+    }
+
+    @Test
+    public void confidenceDecaysWhileCoastingThenDrops() {
+        long lastNs = feed(10, 0, 0);
+        double steady = mTracker.getConfidence();
+        mTracker.predict(lastNs + FRAME_NS);
+        double shortCoast = mTracker.getConfidence();
+        mTracker.predict(lastNs + 4 * FRAME_NS);
+        double longCoast = mTracker.getConfidence();
+        assertTrue(steady > 0.5);
+        assertTrue(shortCoast < steady);
+        assertTrue(longCoast < shortCoast);
+
+        // Past the coast limit the track is dropped.
+        mTracker.predict(lastNs + 11 * FRAME_NS);
+        assertFalse(mTracker.isTracking());
+        assertEquals(0, mTracker.getConfidence(), 0);
+    }
+
+    @Test
+    public void missesOnlyMoveThePrediction() {
+        long lastNs = feed(10, 0, 1.0);
+        double velocity = mTracker.getLeftRightVelocity();
+        mTracker.update(false, 0, 0, 0, lastNs + FRAME_NS);
+        assertTrue(mTracker.isTracking());
+        assertEquals(velocity, mTracker.getLeftRightVelocity(), 0);
+        assertEquals(FRAME_NS, mTracker.getCoastNs(lastNs + FRAME_NS));
+    }
+
+    @Test
+    public void olderResultIsIgnored() {
+        long lastNs = feed(10, 0.4, 0);
+        double location = mTracker.getLeftRightLocation();
+        mTracker.update(true, -0.9, 0.1, 0.05, lastNs - 3 * FRAME_NS);
+        mTracker.predict(lastNs);
+        assertEquals(location, mTracker.getLeftRightLocation(), 1e-9);
+    }
+}
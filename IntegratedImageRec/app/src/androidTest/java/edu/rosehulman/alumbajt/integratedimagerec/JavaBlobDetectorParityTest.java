@@ -0,0 +1,89 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs JavaBlobDetector and ColorBlobDetector (HSV path) on the same synthetic frame and checks
+ * that they report the same blobs. Tolerances follow from measuring pixels instead of a traced
+ * polygon (see JavaBlobDetector): centroids within one mask pixel (4 image pixels), and areas within
+ * half the blob's perimeter in mask pixels plus 25%, since the pixel count includes the boundary ring
+ * that the traced polygon cuts through the middle of.
+ *
+ * Needs the OpenCV native library packaged with the app (OpenCVLoader.initDebug), skipped otherwise.
+ */
+@RunWith(AndroidJUnit4.class)
+public class JavaBlobDetectorParityTest {
+    // Image pixels per mask pixel along each axis (two pyrDown levels).
+    private static final int SCALE = 4;
+    private static final double CENTER_TOLERANCE = SCALE;
+    private static final double AREA_SLACK = 1.25;
+
+    @BeforeClass
+    public static void loadOpenCv() {
+        assumeTrue("OpenCV native library not packaged", OpenCVLoader.initDebug());
+    }
+
+    @Test
+    public void blobsMatchNativeDetector() {
+        // Orange cone-like block, a disc and a small square on a grass green background.
+        Mat frame = new Mat(480, 640, CvType.CV_8UC4, new Scalar(70, 120, 60, 255));
+        Scalar orange = new Scalar(250, 60, 10, 255);
+        Imgproc.rectangle(frame, new Point(380, 100), new Point(460, 330), orange, -1);
+        Imgproc.circle(frame, new Point(150, 200), 60, orange, -1);
+        Imgproc.rectangle(frame, new Point(520, 400), new Point(560, 440), orange, -1);
+        byte[] rgba = new byte[(int) frame.total() * 4];
+        frame.get(0, 0, rgba);
+
+        Scalar target = new Scalar(10, 255, 255);
+        Scalar radius = new Scalar(25, 50, 50, 0);
+        ColorBlobDetector nativeDetector = new ColorBlobDetector();
+        nativeDetector.setHsvColor(target, radius);
+        nativeDetector.process(frame);
+        JavaBlobDetector javaDetector = new JavaBlobDetector(2);
+        javaDetector.setColorRadius(radius);
+        javaDetector.setHsvColor(target);
+        assertTrue(javaDetector.process(rgba, frame.cols(), frame.rows()));
+        javaDetector.shutdown();
+
+        List<ContourStats> contours = nativeDetector.getContourStats();
+        List<Blob> blobs = javaDetector.getBlobs();
+        assertEquals(3, contours.size());
+        assertEquals(contours.size(), blobs.size());
+        for (int i = 0; i < blobs.size(); i++) {
+            Blob blob = blobs.get(i);
+            ContourStats nearest = null;
+            double nearestDistance = Double.MAX_VALUE;
+            for (int j = 0; j < contours.size(); j++) {
+                ContourStats stats = contours.get(j);
+                double distance = Math.hypot(stats.getCenterX() - blob.getCenterX(),
+                        stats.getCenterY() - blob.getCenterY());
+                if (distance < nearestDistance) {
+                    nearest = stats;
+                    nearestDistance = distance;
+                }
+            }
+            assertEquals("blob " + i + " center x", nearest.getCenterX(), blob.getCenterX(), CENTER_TOLERANCE);
+            assertEquals("blob " + i + " center y", nearest.getCenterY(), blob.getCenterY(), CENTER_TOLERANCE);
+            // Half the perimeter in mask pixels, each worth SCALE * SCALE image pixels.
+            double ringArea = (nearest.boundingBox.width + nearest.boundingBox.height) * SCALE;
+            assertEquals("blob " + i + " area", nearest.area, blob.getArea(), AREA_SLACK * ringArea);
+        }
+        frame.release();
+    }
+}
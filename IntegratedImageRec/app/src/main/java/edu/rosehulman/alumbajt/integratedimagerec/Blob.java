@@ -0,0 +1,92 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+/**
+ * One connected region of a mask as found by BlobLabeler: pixel area, centroid, bounding box and
+ * second order central moments, all in full size image coordinates. Unlike ContourStats there is no
+ * contour or Moments object behind it, only the sums gathered while labeling.
+ *
+ * Instances are recycled by the labeler, so they are only valid until the next frame.
+ */
+public class Blob {
+    // Raw sums in mask pixels, filled in by BlobLabeler.
+    double mCount, mSumX, mSumY, mSumXX, mSumXY, mSumYY;
+    int mMinX, mMinY, mMaxX, mMaxY;
+    // Mask to image scale and offset (in mask pixels) applied by the getters.
+    double mScale = 1;
+    double mOffsetX, mOffsetY;
+
+    /**
+     * Area in full size image pixels (mask pixels times the scale squared).
+     */
+    public double getArea() {
+        return mCount * mScale * mScale;
+    }
+
+    public double getCenterX() {
+        return (mSumX / mCount + mOffsetX) * mScale;
+    }
+
+    public double getCenterY() {
+        return (mSumY / mCount + mOffsetY) * mScale;
+    }
+
+    /**
+     * Same convention as the scaled ContourStats bounding box, width and height include both edge
+     * pixels.
+     */
+    public int getLeft() {
+        return (int) ((mMinX + mOffsetX) * mScale);
+    }
+
+    public int getTop() {
+        return (int) ((mMinY + mOffsetY) * mScale);
+    }
+
+    public int getWidth() {
+        return (int) ((mMaxX - mMinX) * mScale) + 1;
+    }
+
+    public int getHeight() {
+        return (int) ((mMaxY - mMinY) * mScale) + 1;
+    }
+
+    /**
+     * Central moments divided by the area (the variance of x, the covariance and the variance of y),
+     * in full size image pixels squared. Describe the blob's spread and orientation.
+     */
+    public double getVarianceX() {
+        double meanX = mSumX / mCount;
+        return (mSumXX / mCount - meanX * meanX) * mScale * mScale;
+    }
+
+    public double getCovarianceXY() {
+        return (mSumXY / mCount - (mSumX / mCount) * (mSumY / mCount)) * mScale * mScale;
+    }
+
+    public double getVarianceY() {
+        double meanY = mSumY / mCount;
+        return (mSumYY / mCount - meanY * meanY) * mScale * mScale;
+    }
+
+    void clear() {
+        mCount = mSumX = mSumY = mSumXX = mSumXY = mSumYY = 0;
+        mMinX = mMinY = Integer.MAX_VALUE;
+        mMaxX = mMaxY = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Folds another blob's sums into this one (used when two labels turn out to be connected).
+     */
+    void merge(Blob other) {
+        mCount += other.mCount;
+        mSumX += other.mSumX;
+        mSumY += other.mSumY;
+        mSumXX += other.mSumXX;
+        mSumXY += other.mSumXY;
+        mSumYY += other.mSumYY;
+        mMinX = Math.min(mMinX, other.mMinX);
+        mMinY = Math.min(mMinY, other.mMinY);
+        mMaxX = Math.max(mMaxX, other.mMaxX);
+        mMaxY = Math.max(mMaxY, other.mMaxY);
+    }
+}
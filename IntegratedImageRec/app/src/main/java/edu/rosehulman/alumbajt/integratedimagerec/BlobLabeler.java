@@ -0,0 +1,439 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single pass 8-connected component labeling of a byte mask with union-find. Area, centroid sums,
+ * bounding box and second order sums are added up per horizontal run during the same raster scan,
+ * so unlike findContours plus contour moments the mask is read once and nothing is walked again.
+ * Labels that turn out to touch are joined in the union-find table and their sums merged at the
+ * end (one step per label, not per pixel).
+ *
+ * labelBits does the same for up to MAX_TARGETS masks packed one bit per target into an int per
+ * pixel. It works on horizontal runs: a pixel only costs work where its bits change, and each target
+ * only adds the runs that match it, so labeling several targets costs little more than one.
+ *
+ * All of the working arrays and Blob objects are kept between frames, so the results are only valid
+ * until the next call to label or labelBits.
+ */
+class BlobLabeler {
+    static final int MAX_TARGETS = 32;
+
+    // Label of each pixel in the previous and current row, 0 for background.
+    private int[] mPreviousRow = new int[0];
+    private int[] mCurrentRow = new int[0];
+    // Union-find parent of each label (index 0 unused).
+    private int[] mParent = new int[64];
+    // Sums for each label, then for each root once merged. Recycled between frames.
+    private final List<Blob> mLabelPool = new ArrayList<Blob>();
+    private int mLabelCount;
+    private final List<Blob> mBlobs = new ArrayList<Blob>();
+
+    // labelBits: start, end and label of each run in the previous and current row, per target.
+    private int[][] mPreviousRuns = new int[0][];
+    private int[][] mCurrentRuns = new int[0][];
+    private final int[] mPreviousRunCounts = new int[MAX_TARGETS];
+    private final int[] mCurrentRunCounts = new int[MAX_TARGETS];
+    // Start of the run still open for each target while a row is scanned.
+    private final int[] mRunStarts = new int[MAX_TARGETS];
+    // Target of each label (index 0 unused).
+    private int[] mLabelTargets = new int[64];
+    private final double[] mTargetMaxCounts = new double[MAX_TARGETS];
+    private final List<List<Blob>> mTargetBlobs = new ArrayList<List<Blob>>();
+
+    /**
+     * Labels the mask and keeps the blobs larger than minBlobArea times the largest blob's area.
+     *
+     * @param mask        Row major mask, non zero where the target color was found.
+     * @param scale       Multiplier from mask coordinates to full image coordinates.
+     * @param minBlobArea Fraction of the largest blob area a blob needs to be kept.
+     */
+    void label(byte[] mask, int width, int height, double scale, double minBlobArea) {
+        label(mask, width, height, scale, minBlobArea, 0, 0);
+    }
+
+    /**
+     * Same as label, but shifts every blob by offsetX, offsetY (in mask coordinates) before scaling.
+     * Used when the mask only covers a window of the full image.
+     */
+    void label(byte[] mask, int width, int height, double scale, double minBlobArea,
+               double offsetX, double offsetY) {
+        if (mPreviousRow.length < width) {
+            mPreviousRow = new int[width];
+            mCurrentRow = new int[width];
+        }
+        int[] previous = mPreviousRow;
+        int[] current = mCurrentRow;
+        for (int x = 0; x < width; x++) {
+            previous[x] = 0;
+        }
+        mLabelCount = 0;
+
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            int x = 0;
+            while (x < width) {
+                if (mask[row + x] == 0) {
+                    current[x++] = 0;
+                    continue;
+                }
+                int runStart = x;
+                while (x < width && mask[row + x] != 0) {
+                    x++;
+                }
+                int runEnd = x - 1;
+
+                // Join every labeled pixel above the run, including the diagonals.
+                int label = 0;
+                for (int above = Math.max(0, runStart - 1), last = Math.min(width - 1, runEnd + 1); above <= last; above++) {
+                    int neighbor = previous[above];
+                    if (neighbor != 0) {
+                        label = label == 0 ? find(neighbor) : union(label, neighbor);
+                    }
+                }
+                if (label == 0) {
+                    label = newLabel();
+                }
+                for (int i = runStart; i <= runEnd; i++) {
+                    current[i] = label;
+                }
+                addRun(mLabelPool.get(label), runStart, runEnd, y);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        mPreviousRow = previous;
+        mCurrentRow = current;
+
+        collectBlobs(scale, minBlobArea, offsetX, offsetY);
+    }
+
+    /**
+     * Labels every target of a bit mask in one pass, keeping for each target the blobs larger than
+     * minBlobArea times that target's largest blob. A pixel can belong to several targets.
+     *
+     * @param bits        Row major, bit k set where target k was found.
+     * @param targetCount Number of targets (bits) in use, at most MAX_TARGETS.
+     * @param scale       Multiplier from mask coordinates to full image coordinates.
+     * @param minBlobArea Fraction of the largest blob area (per target) a blob needs to be kept.
+     */
+    void labelBits(int[] bits, int width, int height, int targetCount, double scale, double minBlobArea) {
+        if (targetCount > MAX_TARGETS) {
+            throw new IllegalArgumentException("At most " + MAX_TARGETS + " targets are supported");
+        }
+        // A row holds at most (width + 1) / 2 runs of one target.
+        int runInts = 3 * ((width + 1) / 2);
+        if (mPreviousRuns.length < targetCount || (targetCount > 0 && mPreviousRuns[0].length < runInts)) {
+            mPreviousRuns = new int[targetCount][runInts];
+            mCurrentRuns = new int[targetCount][runInts];
+        }
+        for (int k = 0; k < targetCount; k++) {
+            mPreviousRunCounts[k] = 0;
+            mCurrentRunCounts[k] = 0;
+        }
+        mLabelCount = 0;
+
+        int previousTargets = 0;
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            // Targets with a run in this row, and those with a run still open at x.
+            int rowTargets = 0;
+            int open = 0;
+            for (int x = 0; x < width; x++) {
+                int word = bits[row + x];
+                if (word == open) {
+                    continue;
+                }
+                closeRuns(open & ~word, x - 1);
+                for (int started = word & ~open; started != 0; started &= started - 1) {
+                    mRunStarts[Integer.numberOfTrailingZeros(started)] = x;
+                }
+                rowTargets |= word;
+                open = word;
+            }
+            closeRuns(open, width - 1);
+
+            for (int targets = rowTargets; targets != 0; targets &= targets - 1) {
+                labelRuns(Integer.numberOfTrailingZeros(targets), y);
+            }
+
+            // This row becomes the row above. Only the targets in either row have counts to move.
+            int[][] swapRuns = mPreviousRuns;
+            mPreviousRuns = mCurrentRuns;
+            mCurrentRuns = swapRuns;
+            for (int targets = rowTargets | previousTargets; targets != 0; targets &= targets - 1) {
+                int k = Integer.numberOfTrailingZeros(targets);
+                mPreviousRunCounts[k] = mCurrentRunCounts[k];
+                mCurrentRunCounts[k] = 0;
+            }
+            previousTargets = rowTargets;
+        }
+
+        collectTargetBlobs(targetCount, scale, minBlobArea);
+    }
+
+    /**
+     * Blobs kept by the last call to label.
+     */
+    List<Blob> getBlobs() {
+        return mBlobs;
+    }
+
+    /**
+     * Blobs of one target kept by the last call to labelBits.
+     */
+    List<Blob> getBlobs(int target) {
+        return mTargetBlobs.get(target);
+    }
+
+    /**
+     * Forgets the last results, used when a frame is dropped before labeling.
+     */
+    void clear() {
+        mBlobs.clear();
+        for (int k = 0; k < mTargetBlobs.size(); k++) {
+            mTargetBlobs.get(k).clear();
+        }
+    }
+
+    /**
+     * Largest blob found by the last call to label, or null if there were none.
+     */
+    Blob getLargest() {
+        Blob largest = null;
+        for (int i = 0; i < mBlobs.size(); i++) {
+            Blob current = mBlobs.get(i);
+            if (largest == null || current.mCount > largest.mCount) {
+                largest = current;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * 3x3 dilate of rows startRow to endRow, pixels outside the mask are ignored (like the default
+     * Imgproc.dilate border). Rows can be split across threads since src is only read.
+     */
+    static void dilate(byte[] src, byte[] dst, int width, int height, int startRow, int endRow) {
+        for (int y = startRow; y < endRow; y++) {
+            int top = Math.max(0, y - 1);
+            int bottom = Math.min(height - 1, y + 1);
+            for (int x = 0; x < width; x++) {
+                int left = Math.max(0, x - 1);
+                int right = Math.min(width - 1, x + 1);
+                byte value = 0;
+                for (int ny = top; ny <= bottom && value == 0; ny++) {
+                    for (int nx = left; nx <= right; nx++) {
+                        if (src[ny * width + nx] != 0) {
+                            value = (byte) 255;
+                            break;
+                        }
+                    }
+                }
+                dst[y * width + x] = value;
+            }
+        }
+    }
+
+    /**
+     * 3x3 dilate of a labelBits mask. OR-ing the neighbors dilates every target's mask at once.
+     */
+    static void dilateBits(int[] src, int[] dst, int width, int height) {
+        for (int y = 0; y < height; y++) {
+            int top = Math.max(0, y - 1) * width;
+            int middle = y * width;
+            int bottom = Math.min(height - 1, y + 1) * width;
+            for (int x = 0; x < width; x++) {
+                int left = Math.max(0, x - 1);
+                int right = Math.min(width - 1, x + 1);
+                int value = 0;
+                for (int nx = left; nx <= right; nx++) {
+                    value |= src[top + nx] | src[middle + nx] | src[bottom + nx];
+                }
+                dst[middle + x] = value;
+            }
+        }
+    }
+
+    /**
+     * Ends the open run of every target in targets at x (inclusive).
+     */
+    private void closeRuns(int targets, int x) {
+        for (; targets != 0; targets &= targets - 1) {
+            int k = Integer.numberOfTrailingZeros(targets);
+            int[] runs = mCurrentRuns[k];
+            int i = 3 * mCurrentRunCounts[k]++;
+            runs[i] = mRunStarts[k];
+            runs[i + 1] = x;
+        }
+    }
+
+    /**
+     * Labels the current row's runs of target k, joining them with the runs of the row above they
+     * touch (including the diagonals). Both rows are in increasing x, so one sweep finds them.
+     */
+    private void labelRuns(int k, int y) {
+        int[] runs = mCurrentRuns[k];
+        int count = mCurrentRunCounts[k];
+        int[] above = mPreviousRuns[k];
+        int aboveCount = mPreviousRunCounts[k];
+        int first = 0;
+        for (int r = 0; r < count; r++) {
+            int start = runs[3 * r];
+            int end = runs[3 * r + 1];
+            while (first < aboveCount && above[3 * first + 1] < start - 1) {
+                first++;
+            }
+            int label = 0;
+            for (int a = first; a < aboveCount && above[3 * a] <= end + 1; a++) {
+                int neighbor = above[3 * a + 2];
+                label = label == 0 ? find(neighbor) : union(label, neighbor);
+            }
+            if (label == 0) {
+                label = newLabel();
+                if (label >= mLabelTargets.length) {
+                    int[] grown = new int[mParent.length];
+                    System.arraycopy(mLabelTargets, 0, grown, 0, mLabelTargets.length);
+                    mLabelTargets = grown;
+                }
+                mLabelTargets[label] = k;
+            }
+            runs[3 * r + 2] = label;
+            addRun(mLabelPool.get(label), start, end, y);
+        }
+    }
+
+    /**
+     * Adds the pixels x0 to x1 of row y with closed forms instead of one pixel at a time.
+     */
+    private static void addRun(Blob blob, int x0, int x1, int y) {
+        double n = x1 - x0 + 1;
+        double sumX = n * (x0 + x1) / 2.0;
+        blob.mCount += n;
+        blob.mSumX += sumX;
+        blob.mSumY += n * y;
+        blob.mSumXX += sumOfSquares(x1) - sumOfSquares(x0 - 1);
+        blob.mSumXY += sumX * y;
+        blob.mSumYY += n * y * (double) y;
+        if (x0 < blob.mMinX) blob.mMinX = x0;
+        if (x1 > blob.mMaxX) blob.mMaxX = x1;
+        if (y < blob.mMinY) blob.mMinY = y;
+        if (y > blob.mMaxY) blob.mMaxY = y;
+    }
+
+    /**
+     * 0^2 + 1^2 + ... + k^2.
+     */
+    private static double sumOfSquares(int k) {
+        return k < 1 ? 0 : k * (k + 1.0) * (2.0 * k + 1.0) / 6.0;
+    }
+
+    private int newLabel() {
+        int label = ++mLabelCount;
+        if (label >= mParent.length) {
+            int[] grown = new int[mParent.length * 2];
+            System.arraycopy(mParent, 0, grown, 0, mParent.length);
+            mParent = grown;
+        }
+        mParent[label] = label;
+        while (mLabelPool.size() <= label) {
+            mLabelPool.add(new Blob());
+        }
+        mLabelPool.get(label).clear();
+        return label;
+    }
+
+    private int find(int label) {
+        int[] parent = mParent;
+        while (parent[label] != label) {
+            // Path halving keeps the trees flat without a second walk.
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+        return label;
+    }
+
+    /**
+     * Joins the two sets, keeping the older (smaller) label as the root.
+     *
+     * @return The root of the joined set.
+     */
+    private int union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return rootA;
+        }
+        if (rootA < rootB) {
+            mParent[rootB] = rootA;
+            return rootA;
+        }
+        mParent[rootA] = rootB;
+        return rootB;
+    }
+
+    private void collectBlobs(double scale, double minBlobArea, double offsetX, double offsetY) {
+        mergeLabels();
+
+        double maxCount = 0;
+        for (int label = 1; label <= mLabelCount; label++) {
+            if (mParent[label] == label) {
+                maxCount = Math.max(maxCount, mLabelPool.get(label).mCount);
+            }
+        }
+        mBlobs.clear();
+        for (int label = 1; label <= mLabelCount; label++) {
+            Blob blob = mLabelPool.get(label);
+            if (mParent[label] == label && blob.mCount > minBlobArea * maxCount) {
+                blob.mScale = scale;
+                blob.mOffsetX = offsetX;
+                blob.mOffsetY = offsetY;
+                mBlobs.add(blob);
+            }
+        }
+    }
+
+    private void collectTargetBlobs(int targetCount, double scale, double minBlobArea) {
+        mergeLabels();
+
+        while (mTargetBlobs.size() < targetCount) {
+            mTargetBlobs.add(new ArrayList<Blob>());
+        }
+        for (int k = 0; k < targetCount; k++) {
+            mTargetMaxCounts[k] = 0;
+            mTargetBlobs.get(k).clear();
+        }
+        for (int label = 1; label <= mLabelCount; label++) {
+            if (mParent[label] == label) {
+                int k = mLabelTargets[label];
+                mTargetMaxCounts[k] = Math.max(mTargetMaxCounts[k], mLabelPool.get(label).mCount);
+            }
+        }
+        for (int label = 1; label <= mLabelCount; label++) {
+            Blob blob = mLabelPool.get(label);
+            int k = mLabelTargets[label];
+            if (mParent[label] == label && blob.mCount > minBlobArea * mTargetMaxCounts[k]) {
+                blob.mScale = scale;
+                blob.mOffsetX = 0;
+                blob.mOffsetY = 0;
+                mTargetBlobs.get(k).add(blob);
+            }
+        }
+    }
+
+    /**
+     * Folds every label's sums into its root.
+     */
+    private void mergeLabels() {
+        // Roots always have a smaller label than their children, so going backwards merges every
+        // child into its parent before the parent is merged further up.
+        for (int label = mLabelCount; label >= 1; label--) {
+            int parent = mParent[label];
+            if (parent != label) {
+                mLabelPool.get(parent).merge(mLabelPool.get(label));
+            }
+        }
+    }
+}
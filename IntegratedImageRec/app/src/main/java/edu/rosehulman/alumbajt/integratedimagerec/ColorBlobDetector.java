@@ -4,11 +4,11 @@ import org.opencv.core.Core;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 public class ColorBlobDetector {
@@ -20,35 +20,110 @@ public class ColorBlobDetector {
     // Color radius for range checking in HSV color space
     private Scalar mColorRadius = new Scalar(25,50,50,0);
     private Mat mSpectrum = new Mat();
-    private List<MatOfPoint> mContours = new ArrayList<MatOfPoint>();
+    // Last target color, so a radius change can rebuild the bounds without a new target.
+    private Scalar mHsvColor;
+    // Target compiled into a quantized RGB table, used instead of cvtColor + inRange when enabled.
+    private final ColorLookupTable mRgbTable = new ColorLookupTable(ColorLookupTable.SPACE_RGB);
+    private final double[] mTableLowerBound = new double[3];
+    private final double[] mTableUpperBound = new double[3];
+    private boolean mUseLookupTable = false;
+    private boolean mTableBuilt = false;
+    private byte[] mRgbaBuffer = new byte[0];
+    private byte[] mMaskBuffer = new byte[0];
 
     // Cache
     Mat mPyrDownMat = new Mat();
     Mat mHsvMat = new Mat();
     Mat mMask = new Mat();
-    Mat mDilatedMask = new Mat();
-    Mat mHierarchy = new Mat();
+    // Scale back up from the pyrDown calls (2 ^ mPyramidLevel), allocated once.
+    private final Scalar mContourScale = new Scalar(4, 4);
 
+    // Pyramid depth. Fixed at DEFAULT_PYRAMID_LEVEL unless adaptive mode is on.
+    public static final int DEFAULT_PYRAMID_LEVEL = 2;
+    public static final int MIN_PYRAMID_LEVEL = 1;
+    public static final int MAX_PYRAMID_LEVEL = 4;
+    private int mPyramidLevel = DEFAULT_PYRAMID_LEVEL;
+    private boolean mAdaptivePyramid = false;
+    private long mFrameBudgetNs = 33000000L;
+    private long mLastProcessNs = 0;
+    // Go finer when the blob's smaller side is below this many mask pixels, coarser above the upper one.
+    private static final int MIN_BLOB_SIDE_AT_LEVEL = 12;
+    private static final int MAX_BLOB_SIDE_AT_LEVEL = 48;
+    // Dilate, findContours, filtering and per-contour stats.
+    private final ContourExtractor mExtractor = new ContourExtractor();
+    // Off until setStageTimings shares the activity's histograms.
+    private StageTimings mTimings = new StageTimings();
+
+    // Tracking mode. Once a blob is locked only a window around it is processed.
+    private boolean mTrackingEnabled = false;
+    private boolean mLocked = false;
+    private double mLastCenterX, mLastCenterY, mVelocityX, mVelocityY;
+    private final Rect mLastBox = new Rect();
+    private final Rect mSearchWindow = new Rect();
+    private final Point mWindowOffset = new Point();
+    private boolean mLastFrameWindowed = false;
+    // Extra room around the last bounding box, as a fraction of its larger side.
+    private static final double TRACKING_MARGIN = 0.5;
+    // Smallest window side in full size pixels, so small blobs are not lost on a single jitter.
+    private static final int MIN_TRACKING_WINDOW = 64;
+
+    /**
+     * Sets the accepted distance from the target in each HSV channel. If a target color has already
+     * been set the bounds (and lookup table) are rebuilt right away.
+     */
     public void setColorRadius(Scalar radius) {
-        mColorRadius = radius;
+        if (mHsvColor == null) {
+            mColorRadius = radius;
+        } else {
+            setHsvColor(mHsvColor, radius);
+        }
     }
 
-    public void setHsvColor(Scalar hsvColor) {
-        double minH = (hsvColor.val[0] >= mColorRadius.val[0]) ? hsvColor.val[0]-mColorRadius.val[0] : 0;
-        double maxH = (hsvColor.val[0]+mColorRadius.val[0] <= 255) ? hsvColor.val[0]+mColorRadius.val[0] : 255;
+    /**
+     * Uses the precompiled lookup table (one lookup per pixel) instead of cvtColor and inRange.
+     * The table classifies 32x32x32 RGB bins by their center color, so colors in a bin that the
+     * range boundary cuts through get the center's answer. Over every RGB color that disagrees with
+     * the HSV range check for 0.2% to 1.2% of all colors, or 11% to 16% of the in-range ones, all
+     * within one bin of the boundary (see ColorLookupTableTest). Off by default; the activities
+     * switch it from the menu.
+     */
+    public void setLookupTableEnabled(boolean enabled) {
+        mUseLookupTable = enabled;
+    }
 
-        mLowerBound.val[0] = minH;
-        mUpperBound.val[0] = maxH;
+    public void setHsvColor(Scalar hsvColor) {
+        setHsvColor(hsvColor, mColorRadius);
+    }
 
-        mLowerBound.val[1] = hsvColor.val[1] - mColorRadius.val[1];
-        mUpperBound.val[1] = hsvColor.val[1] + mColorRadius.val[1];
+    /**
+     * Sets the target color and the accepted distance from it together. The spectrum and lookup
+     * table are only rebuilt when the HSV bounds actually move (the seek bars call this on every
+     * tick, often with the same values).
+     */
+    public void setHsvColor(Scalar hsvColor, Scalar radius) {
+        boolean firstTarget = mHsvColor == null;
+        mHsvColor = hsvColor;
+        mColorRadius = radius;
+        double minH = (hsvColor.val[0] >= radius.val[0]) ? hsvColor.val[0]-radius.val[0] : 0;
+        double maxH = (hsvColor.val[0]+radius.val[0] <= 255) ? hsvColor.val[0]+radius.val[0] : 255;
 
-        mLowerBound.val[2] = hsvColor.val[2] - mColorRadius.val[2];
-        mUpperBound.val[2] = hsvColor.val[2] + mColorRadius.val[2];
+        boolean changed = setBounds(0, minH, maxH)
+                | setBounds(1, hsvColor.val[1] - radius.val[1], hsvColor.val[1] + radius.val[1])
+                | setBounds(2, hsvColor.val[2] - radius.val[2], hsvColor.val[2] + radius.val[2]);
 
         mLowerBound.val[3] = 0;
         mUpperBound.val[3] = 255;
 
+        if (!changed && !firstTarget) {
+            return;
+        }
+        for (int i = 0; i < 3; i++) {
+            mTableLowerBound[i] = mLowerBound.val[i];
+            mTableUpperBound[i] = mUpperBound.val[i];
+        }
+        mRgbTable.build(mTableLowerBound, mTableUpperBound);
+        mTableBuilt = true;
+
         Mat spectrumHsv = new Mat(1, (int)(maxH-minH), CvType.CV_8UC3);
 
         for (int j = 0; j < maxH-minH; j++) {
@@ -57,6 +132,26 @@ public class ColorBlobDetector {
         }
 
         Imgproc.cvtColor(spectrumHsv, mSpectrum, Imgproc.COLOR_HSV2RGB_FULL, 4);
+        spectrumHsv.release();
+    }
+
+    /**
+     * @return True if the channel's bounds changed.
+     */
+    private boolean setBounds(int channel, double lower, double upper) {
+        boolean changed = mLowerBound.val[channel] != lower || mUpperBound.val[channel] != upper;
+        mLowerBound.val[channel] = lower;
+        mUpperBound.val[channel] = upper;
+        return changed;
+    }
+
+    /**
+     * Records pyrDown, color classification and contour stage times into the given histograms
+     * (while they are enabled).
+     */
+    public void setStageTimings(StageTimings timings) {
+        mTimings = timings;
+        mExtractor.setStageTimings(timings);
     }
 
     public Mat getSpectrum() {
@@ -67,42 +162,231 @@ public class ColorBlobDetector {
         mMinContourArea = area;
     }
 
-    public void process(Mat rgbaImage) {
-        Imgproc.pyrDown(rgbaImage, mPyrDownMat);
-        Imgproc.pyrDown(mPyrDownMat, mPyrDownMat);
+    /**
+     * Turns the region of interest tracking mode on or off. While tracking, a locked blob is
+     * searched for only in a window sized from its last bounding box and velocity. A miss falls
+     * back to a full frame search in the same call.
+     */
+    public void setTrackingEnabled(boolean enabled) {
+        mTrackingEnabled = enabled;
+        if (!enabled) {
+            mLocked = false;
+        }
+    }
 
-        Imgproc.cvtColor(mPyrDownMat, mHsvMat, Imgproc.COLOR_RGB2HSV_FULL);
+    /**
+     * True if the last call to process only looked at the tracking window.
+     */
+    public boolean wasLastFrameWindowed() {
+        return mLastFrameWindowed;
+    }
 
-        Core.inRange(mHsvMat, mLowerBound, mUpperBound, mMask);
-        Imgproc.dilate(mMask, mDilatedMask, new Mat());
+    /**
+     * Turns per frame pyramid level selection on or off. When on, the level is picked from the last
+     * blob's size (large, near cones use coarser levels) and pushed coarser whenever the last frame
+     * went over the frame time budget. When off, the detector always uses DEFAULT_PYRAMID_LEVEL.
+     */
+    public void setAdaptivePyramidEnabled(boolean enabled) {
+        mAdaptivePyramid = enabled;
+        if (!enabled) {
+            setPyramidLevel(DEFAULT_PYRAMID_LEVEL);
+        }
+    }
 
-        List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
+    public void setFrameTimeBudgetMs(double budgetMs) {
+        mFrameBudgetNs = (long) (budgetMs * 1000000.0);
+    }
+
+    /**
+     * Number of pyrDown calls used by the last call to process.
+     */
+    public int getPyramidLevel() {
+        return mPyramidLevel;
+    }
 
-        Imgproc.findContours(mDilatedMask, contours, mHierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+    private void setPyramidLevel(int level) {
+        mPyramidLevel = level;
+        mContourScale.val[0] = 1 << level;
+        mContourScale.val[1] = 1 << level;
+    }
+
+    /**
+     * Picks the pyramid level for this frame. With no lock the default level is used so small,
+     * distant cones can still be found.
+     */
+    private void choosePyramidLevel() {
+        int level = DEFAULT_PYRAMID_LEVEL;
+        if (mLocked) {
+            level = mPyramidLevel;
+            int blobSide = Math.min(mLastBox.width, mLastBox.height);
+            while (level < MAX_PYRAMID_LEVEL && (blobSide >> level) > MAX_BLOB_SIDE_AT_LEVEL) {
+                level++;
+            }
+            while (level > MIN_PYRAMID_LEVEL && (blobSide >> level) < MIN_BLOB_SIDE_AT_LEVEL) {
+                level--;
+            }
+        }
+        // Over budget last frame, so trade detail for time.
+        if (mLastProcessNs > mFrameBudgetNs && level < MAX_PYRAMID_LEVEL) {
+            level = Math.max(level, mPyramidLevel + 1);
+        }
+        setPyramidLevel(Math.min(level, MAX_PYRAMID_LEVEL));
+    }
 
-        // Find max contour area
-        double maxArea = 0;
-        Iterator<MatOfPoint> each = contours.iterator();
-        while (each.hasNext()) {
-            MatOfPoint wrapper = each.next();
-            double area = Imgproc.contourArea(wrapper);
-            if (area > maxArea)
-                maxArea = area;
+    public void process(Mat rgbaImage) {
+        long startNs = System.nanoTime();
+        if (mAdaptivePyramid) {
+            choosePyramidLevel();
         }
+        processFrame(rgbaImage);
+        mLastProcessNs = System.nanoTime() - startNs;
+        if (mTimings.isEnabled()) {
+            mTimings.record(StageTimings.DETECTOR_TOTAL, mLastProcessNs);
+        }
+    }
 
-        // Filter contours by area and resize to fit the original image size
-        mContours.clear();
-        each = contours.iterator();
-        while (each.hasNext()) {
-            MatOfPoint contour = each.next();
-            if (Imgproc.contourArea(contour) > mMinContourArea*maxArea) {
-                Core.multiply(contour, new Scalar(4,4), contour);
-                mContours.add(contour);
+    private void processFrame(Mat rgbaImage) {
+        mLastFrameWindowed = false;
+        if (mTrackingEnabled && mLocked && updateSearchWindow(rgbaImage.cols(), rgbaImage.rows())) {
+            Mat window = rgbaImage.submat(mSearchWindow);
+            mWindowOffset.x = mSearchWindow.x / mContourScale.val[0];
+            mWindowOffset.y = mSearchWindow.y / mContourScale.val[1];
+            processRegion(window, mWindowOffset);
+            window.release();
+            if (!mExtractor.getContours().isEmpty()) {
+                mLastFrameWindowed = true;
+                updateLock();
+                return;
             }
         }
+        processRegion(rgbaImage, null);
+        updateLock();
+    }
+
+    private void processRegion(Mat rgbaImage, Point offset) {
+        long t = mTimings.start();
+        Imgproc.pyrDown(rgbaImage, mPyrDownMat);
+        for (int level = 1; level < mPyramidLevel; level++) {
+            Imgproc.pyrDown(mPyrDownMat, mPyrDownMat);
+        }
+        t = mTimings.lap(StageTimings.PYR_DOWN, t);
+
+        if (mUseLookupTable && mTableBuilt) {
+            applyLookupTable(mPyrDownMat, mMask);
+            mTimings.lap(StageTimings.LOOKUP_TABLE, t);
+        } else {
+            Imgproc.cvtColor(mPyrDownMat, mHsvMat, Imgproc.COLOR_RGB2HSV_FULL);
+            t = mTimings.lap(StageTimings.CVT_COLOR, t);
+            Core.inRange(mHsvMat, mLowerBound, mUpperBound, mMask);
+            mTimings.lap(StageTimings.IN_RANGE, t);
+        }
+        mExtractor.extract(mMask, mContourScale, mMinContourArea, offset);
+    }
+
+    /**
+     * Builds the mask with one table lookup per RGBA pixel.
+     */
+    private void applyLookupTable(Mat rgbaImage, Mat mask) {
+        int rows = rgbaImage.rows();
+        int cols = rgbaImage.cols();
+        int pixels = rows * cols;
+        if (mRgbaBuffer.length != pixels * 4) {
+            mRgbaBuffer = new byte[pixels * 4];
+        }
+        if (mMaskBuffer.length != pixels) {
+            mMaskBuffer = new byte[pixels];
+        }
+        rgbaImage.get(0, 0, mRgbaBuffer);
+        byte[] rgba = mRgbaBuffer;
+        byte[] maskBytes = mMaskBuffer;
+        ColorLookupTable table = mRgbTable;
+        for (int i = 0, p = 0; i < pixels; i++, p += 4) {
+            maskBytes[i] = table.contains(rgba[p] & 0xFF, rgba[p + 1] & 0xFF, rgba[p + 2] & 0xFF) ? (byte) 255 : 0;
+        }
+        mask.create(rows, cols, CvType.CV_8UC1);
+        mask.put(0, 0, maskBytes);
+    }
+
+    /**
+     * Remembers where the largest blob is (and how fast it moves) for the next tracking window.
+     */
+    private void updateLock() {
+        ContourStats largest = mExtractor.getLargest();
+        if (largest == null || largest.moments.m00 == 0) {
+            mLocked = false;
+            return;
+        }
+        double centerX = largest.getCenterX();
+        double centerY = largest.getCenterY();
+        if (mLocked) {
+            mVelocityX = centerX - mLastCenterX;
+            mVelocityY = centerY - mLastCenterY;
+        } else {
+            mVelocityX = 0;
+            mVelocityY = 0;
+        }
+        mLastCenterX = centerX;
+        mLastCenterY = centerY;
+        mLastBox.x = largest.boundingBox.x;
+        mLastBox.y = largest.boundingBox.y;
+        mLastBox.width = largest.boundingBox.width;
+        mLastBox.height = largest.boundingBox.height;
+        mLocked = true;
     }
 
+    /**
+     * Sizes the search window from the last bounding box, shifted by the last velocity and grown by
+     * the margin. The corners are kept on multiples of the pyramid scale so the mask pixels line up
+     * with a full frame search.
+     *
+     * @return False if the window would cover the whole image anyway.
+     */
+    private boolean updateSearchWindow(int imageWidth, int imageHeight) {
+        int step = (int) mContourScale.val[0];
+        double margin = TRACKING_MARGIN * Math.max(mLastBox.width, mLastBox.height);
+        double halfWidth = Math.max(mLastBox.width / 2.0 + margin + Math.abs(mVelocityX), MIN_TRACKING_WINDOW / 2.0);
+        double halfHeight = Math.max(mLastBox.height / 2.0 + margin + Math.abs(mVelocityY), MIN_TRACKING_WINDOW / 2.0);
+        double centerX = mLastBox.x + mLastBox.width / 2.0 + mVelocityX;
+        double centerY = mLastBox.y + mLastBox.height / 2.0 + mVelocityY;
+
+        int left = Math.max(0, (int) (centerX - halfWidth) / step * step);
+        int top = Math.max(0, (int) (centerY - halfHeight) / step * step);
+        int right = Math.min(imageWidth, (int) Math.ceil((centerX + halfWidth) / step) * step);
+        int bottom = Math.min(imageHeight, (int) Math.ceil((centerY + halfHeight) / step) * step);
+        if (right - left < step || bottom - top < step) {
+            return false;
+        }
+        if (left == 0 && top == 0 && right == imageWidth && bottom == imageHeight) {
+            return false;
+        }
+        mSearchWindow.x = left;
+        mSearchWindow.y = top;
+        mSearchWindow.width = right - left;
+        mSearchWindow.height = bottom - top;
+        return true;
+    }
+
+    /**
+     * Pooled objects and scratch capacity held by the contour stage, for checking that process
+     * stops allocating once warmed up.
+     */
+    int getPoolSize() {
+        return mExtractor.getPoolSize();
+    }
+
+    /**
+     * Contours found by the last call to process. The MatOfPoint objects are recycled, so they are
+     * only valid until the next call to process.
+     */
     public List<MatOfPoint> getContours() {
-        return mContours;
+        return mExtractor.getContours();
+    }
+
+    /**
+     * Area, bounding box and moments of each contour returned by getContours (same order). Like the
+     * contours these are recycled and only valid until the next call to process.
+     */
+    public List<ContourStats> getContourStats() {
+        return mExtractor.getContourStats();
     }
 }
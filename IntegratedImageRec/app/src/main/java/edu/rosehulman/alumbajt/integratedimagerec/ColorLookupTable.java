@@ -0,0 +1,106 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+/**
+ * A 32x32x32 bit table that answers "is this pixel inside the HSV target?" for pixels in some other
+ * color space (YUV from the camera, or RGB) with one lookup. Each channel is quantized to 5 bits
+ * and every bin is classified once, using the HSV value of the bin center, when the target changes.
+ *
+ * The HSV math matches Imgproc.COLOR_RGB2HSV_FULL (hue 0 to 255) so the same target and range
+ * values work for every detector.
+ */
+class ColorLookupTable {
+    public static final int SPACE_YUV = 0;
+    public static final int SPACE_RGB = 1;
+
+    private static final int LEVELS = 32;
+    private static final int SHIFT = 3; // 8 bit values down to 5 bit bins
+
+    // One bit per bin, LEVELS^3 bits.
+    private final long[] mBits = new long[LEVELS * LEVELS * LEVELS / 64];
+    private final int mSpace;
+
+    ColorLookupTable(int space) {
+        mSpace = space;
+    }
+
+    /**
+     * Reclassifies every bin against the HSV bounds. Bounds are inclusive like Core.inRange.
+     */
+    void build(double[] lowerHsv, double[] upperHsv) {
+        int[] rgb = new int[3];
+        int[] hsv = new int[3];
+        for (int i = 0; i < mBits.length; i++) {
+            mBits[i] = 0;
+        }
+        for (int c0 = 0; c0 < LEVELS; c0++) {
+            for (int c1 = 0; c1 < LEVELS; c1++) {
+                for (int c2 = 0; c2 < LEVELS; c2++) {
+                    int v0 = (c0 << SHIFT) + (1 << (SHIFT - 1));
+                    int v1 = (c1 << SHIFT) + (1 << (SHIFT - 1));
+                    int v2 = (c2 << SHIFT) + (1 << (SHIFT - 1));
+                    if (mSpace == SPACE_YUV) {
+                        yuvToRgb(v0, v1, v2, rgb);
+                    } else {
+                        rgb[0] = v0;
+                        rgb[1] = v1;
+                        rgb[2] = v2;
+                    }
+                    rgbToHsvFull(rgb[0], rgb[1], rgb[2], hsv);
+                    if (hsv[0] >= lowerHsv[0] && hsv[0] <= upperHsv[0]
+                            && hsv[1] >= lowerHsv[1] && hsv[1] <= upperHsv[1]
+                            && hsv[2] >= lowerHsv[2] && hsv[2] <= upperHsv[2]) {
+                        int index = (c0 << 10) | (c1 << 5) | c2;
+                        mBits[index >>> 6] |= 1L << (index & 63);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * True if the pixel (8 bit channels in this table's color space) is inside the target.
+     */
+    boolean contains(int c0, int c1, int c2) {
+        int index = ((c0 >>> SHIFT) << 10) | ((c1 >>> SHIFT) << 5) | (c2 >>> SHIFT);
+        return (mBits[index >>> 6] & (1L << (index & 63))) != 0;
+    }
+
+    /**
+     * BT.601 video range YUV to RGB, the same conversion used by Imgproc.COLOR_YUV2RGB_NV21.
+     */
+    static void yuvToRgb(int y, int u, int v, int[] rgb) {
+        double c = 1.164 * (y - 16);
+        rgb[0] = clamp((int) Math.round(c + 1.596 * (v - 128)));
+        rgb[1] = clamp((int) Math.round(c - 0.813 * (v - 128) - 0.391 * (u - 128)));
+        rgb[2] = clamp((int) Math.round(c + 2.018 * (u - 128)));
+    }
+
+    /**
+     * RGB to HSV with hue scaled to 0 to 255, like Imgproc.COLOR_RGB2HSV_FULL.
+     */
+    static void rgbToHsvFull(int r, int g, int b, int[] hsv) {
+        int max = Math.max(r, Math.max(g, b));
+        int min = Math.min(r, Math.min(g, b));
+        int delta = max - min;
+        double hue = 0;
+        if (delta != 0) {
+            if (max == r) {
+                hue = 60.0 * (g - b) / delta;
+            } else if (max == g) {
+                hue = 120.0 + 60.0 * (b - r) / delta;
+            } else {
+                hue = 240.0 + 60.0 * (r - g) / delta;
+            }
+            if (hue < 0) {
+                hue += 360.0;
+            }
+        }
+        hsv[0] = (int) Math.round(hue * 256.0 / 360.0) & 0xFF;
+        hsv[1] = max == 0 ? 0 : (int) Math.round(255.0 * delta / max);
+        hsv[2] = max;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
@@ -0,0 +1,86 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import java.util.List;
+
+/**
+ * The findCone math with no Android dependencies, so the same code runs in the app and in the
+ * desktop FrameReplayer.
+ */
+public class ConeLocator {
+
+    /**
+     * Performs the math to find the leftRightLocation, topBottomLocation, and sizePercentage values.
+     *
+     * @param contourStats      Stats for each blob that matches the target color (from the detector).
+     * @param minSizePercentage Minimum size percentage needed to call a blob a match. 0.005 would be 0.5%
+     * @param imageWidth        Width of the camera frame in pixels.
+     * @param imageHeight       Height of the camera frame in pixels.
+     * @param coneResult        Array that will be populated with the results of this math.
+     * @return True if a cone is found, False if no cone is found.
+     */
+    public static boolean findCone(List<ContourStats> contourStats, double minSizePercentage,
+                                   double imageWidth, double imageHeight, double[] coneResult) {
+        // Step #0: Determine if any contour regions were found that match the target color criteria.
+        if (contourStats.size() == 0) {
+            return false; // No contours found.
+        }
+
+        // Step #1: Use only the largest contour. Other contours (potential other cones) will be ignored.
+        ContourStats largest = contourStats.get(0);
+        for (int i = 1; i < contourStats.size(); ++i) {
+            ContourStats current = contourStats.get(i);
+            if (current.area > largest.area) {
+                largest = current;
+            }
+        }
+
+        // The detector already ran contourMoments (Imgproc.moments fails, see https://github.com/Itseez/opencv/issues/5017).
+        return locateCone(largest.area, largest.getCenterX(), largest.getCenterY(), minSizePercentage,
+                imageWidth, imageHeight, coneResult);
+    }
+
+    /**
+     * Same as findCone, but for the Blob records of BlobLabeler (no contours or Moments involved).
+     */
+    public static boolean findConeInBlobs(List<Blob> blobs, double minSizePercentage,
+                                          double imageWidth, double imageHeight, double[] coneResult) {
+        if (blobs.size() == 0) {
+            return false; // No blobs found.
+        }
+
+        // Use only the largest blob. Other blobs (potential other cones) will be ignored.
+        Blob largest = blobs.get(0);
+        for (int i = 1; i < blobs.size(); ++i) {
+            Blob current = blobs.get(i);
+            if (current.getArea() > largest.getArea()) {
+                largest = current;
+            }
+        }
+        return locateCone(largest.getArea(), largest.getCenterX(), largest.getCenterY(), minSizePercentage,
+                imageWidth, imageHeight, coneResult);
+    }
+
+    /**
+     * Steps #2 to #4 of findCone, once the largest blob is known.
+     */
+    private static boolean locateCone(double area, double aveX, double aveY, double minSizePercentage,
+                                      double imageWidth, double imageHeight, double[] coneResult) {
+        // Step #2: Determine if this target meets the size requirement.
+        double sizePercentage = area / (imageWidth * imageHeight);
+        if (sizePercentage < minSizePercentage) {
+            return false; // No cone found meeting the size requirement.
+        }
+
+        // Step #3: Convert the X and Y values into leftRight and topBottom values.
+        // X is 0 on the left (which is really the bottom) divide by width to scale the topBottomLocation
+        // Y is 0 on the top of the view (object is left of the robot) divide by height to scale
+        double leftRightLocation = aveY / (imageHeight / 2.0) - 1.0;
+        double topBottomLocation = aveX / imageWidth;
+
+        // Step #4: Populate the results array.
+        coneResult[0] = leftRightLocation;
+        coneResult[1] = topBottomLocation;
+        coneResult[2] = sizePercentage;
+        return true;
+    }
+}
@@ -0,0 +1,249 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.video.KalmanFilter;
+
+/**
+ * Smooths the findCone results with OpenCV's KalmanFilter and predicts them between frames. The
+ * state is the left/right location, top/bottom location and size percentage plus their rates of
+ * change (per second), so the cone keeps moving at its last speed while vision is slow, skipping or
+ * dropping frames.
+ *
+ * The filter itself only steps forward to the capture time of each detection. predict extrapolates
+ * from there to any later time without changing the filter, so a loop can ask for the cone "now"
+ * as often as it likes and a vision result that arrives late still gets used.
+ *
+ * Confidence falls as the predicted position uncertainty grows. Once it reaches zero (or nothing
+ * was seen for MAX_COAST_NS) the track is dropped and isTracking is false until the next detection.
+ *
+ * Needs the native OpenCV library, so create it once OpenCV has loaded. Not thread safe, call it
+ * from one thread (the control thread in ImageRecActivity, which both feeds it vision results and
+ * predicts for the loop).
+ */
+public class ConeTracker {
+    private static final int STATES = 6;
+    private static final int MEASUREMENTS = 3;
+    private static final int LEFT_RIGHT = 0;
+    private static final int TOP_BOTTOM = 1;
+    private static final int SIZE = 2;
+
+    // Longest time to predict without a detection before the track is dropped.
+    private static final long MAX_COAST_NS = 1000000000L;
+    // Left/right standard deviation (in location units, -1 to 1) at which confidence reaches 0.
+    private static final double MAX_LEFT_RIGHT_SIGMA = 0.5;
+
+    // Measurement noise (standard deviation) of a single findCone result.
+    private static final double LOCATION_NOISE = 0.05;
+    private static final double SIZE_NOISE = 0.005;
+    // How fast the velocities are allowed to change (standard deviation per second).
+    private static final double LOCATION_ACCELERATION = 1.0;
+    private static final double SIZE_ACCELERATION = 0.05;
+
+    private final KalmanFilter mFilter = new KalmanFilter(STATES, MEASUREMENTS, 0, CvType.CV_64F);
+    // Matrices shared with the filter (set once, then updated in place).
+    private final Mat mTransition = Mat.eye(STATES, STATES, CvType.CV_64F);
+    private final Mat mProcessNoise = Mat.zeros(STATES, STATES, CvType.CV_64F);
+    private final Mat mMeasurement = new Mat(MEASUREMENTS, 1, CvType.CV_64F);
+    private final double[] mValues = new double[MEASUREMENTS];
+
+    // Filter estimate at mStateTimeNs (the last detection).
+    private final double[] mState = new double[STATES];
+    private final double[] mCovariance = new double[STATES * STATES];
+    // Extrapolated from mState by the last predict (or update).
+    private final double[] mPredicted = new double[MEASUREMENTS];
+
+    private boolean mTracking = false;
+    private long mStateTimeNs;
+    private double mConfidence = 0;
+
+    public ConeTracker() {
+        Mat measurementMatrix = Mat.zeros(MEASUREMENTS, STATES, CvType.CV_64F);
+        measurementMatrix.put(LEFT_RIGHT, LEFT_RIGHT, 1);
+        measurementMatrix.put(TOP_BOTTOM, TOP_BOTTOM, 1);
+        measurementMatrix.put(SIZE, SIZE, 1);
+        mFilter.set_measurementMatrix(measurementMatrix);
+
+        Mat measurementNoise = Mat.zeros(MEASUREMENTS, MEASUREMENTS, CvType.CV_64F);
+        measurementNoise.put(LEFT_RIGHT, LEFT_RIGHT, LOCATION_NOISE * LOCATION_NOISE);
+        measurementNoise.put(TOP_BOTTOM, TOP_BOTTOM, LOCATION_NOISE * LOCATION_NOISE);
+        measurementNoise.put(SIZE, SIZE, SIZE_NOISE * SIZE_NOISE);
+        mFilter.set_measurementNoiseCov(measurementNoise);
+
+        mFilter.set_transitionMatrix(mTransition);
+        mFilter.set_processNoiseCov(mProcessNoise);
+    }
+
+    /**
+     * Adds one findCone result. Misses only move the prediction forward, the estimate is left to
+     * coast until a detection or MAX_COAST_NS.
+     *
+     * @param coneFound     False for a frame where vision ran but saw no cone.
+     * @param captureTimeNs System.nanoTime of the camera frame the result came from.
+     */
+    public void update(boolean coneFound, double leftRightLocation, double topBottomLocation,
+                       double sizePercentage, long captureTimeNs) {
+        if (!coneFound) {
+            predict(captureTimeNs);
+            return;
+        }
+        if (!mTracking) {
+            start(leftRightLocation, topBottomLocation, sizePercentage, captureTimeNs);
+        } else if (captureTimeNs >= mStateTimeNs) {
+            advance(captureTimeNs);
+            mValues[LEFT_RIGHT] = leftRightLocation;
+            mValues[TOP_BOTTOM] = topBottomLocation;
+            mValues[SIZE] = sizePercentage;
+            mMeasurement.put(0, 0, mValues);
+            mFilter.correct(mMeasurement).release();
+            readState();
+        }
+        // An out of order (older) result is ignored, but still refreshes the prediction.
+        predict(captureTimeNs);
+    }
+
+    /**
+     * Extrapolates the last estimate to timeNs (for the FSM loop or a frame that vision skipped),
+     * updating the location, size and confidence getters. Drops the track once it has coasted too
+     * long or lost all confidence.
+     */
+    public void predict(long timeNs) {
+        if (!mTracking) {
+            return;
+        }
+        long coastNs = timeNs - mStateTimeNs;
+        if (coastNs > MAX_COAST_NS) {
+            reset();
+            return;
+        }
+        double dt = Math.max(0, coastNs / 1e9);
+        for (int i = 0; i < MEASUREMENTS; i++) {
+            mPredicted[i] = mState[i] + dt * mState[i + MEASUREMENTS];
+        }
+        // Left/right variance of F P F' + Q for the position / velocity pair.
+        int p = LEFT_RIGHT * STATES + LEFT_RIGHT;
+        int pv = LEFT_RIGHT * STATES + LEFT_RIGHT + MEASUREMENTS;
+        int v = (LEFT_RIGHT + MEASUREMENTS) * STATES + LEFT_RIGHT + MEASUREMENTS;
+        double q = LOCATION_ACCELERATION * LOCATION_ACCELERATION;
+        double variance = mCovariance[p] + 2 * dt * mCovariance[pv] + dt * dt * mCovariance[v]
+                + q * dt * dt * dt * dt / 4;
+        mConfidence = confidence(variance);
+        if (mConfidence == 0) {
+            reset();
+        }
+    }
+
+    /**
+     * Drops the track, isTracking stays false until the next detection.
+     */
+    public void reset() {
+        mTracking = false;
+        mConfidence = 0;
+    }
+
+    public boolean isTracking() {
+        return mTracking;
+    }
+
+    public double getLeftRightLocation() {
+        return mPredicted[LEFT_RIGHT];
+    }
+
+    public double getTopBottomLocation() {
+        return mPredicted[TOP_BOTTOM];
+    }
+
+    public double getSizePercentage() {
+        return mPredicted[SIZE];
+    }
+
+    /**
+     * Left/right location change per second.
+     */
+    public double getLeftRightVelocity() {
+        return mState[LEFT_RIGHT + MEASUREMENTS];
+    }
+
+    /**
+     * Close to 1 after a run of steady detections, falling towards 0 as the prediction gets less
+     * certain. 0 when not tracking.
+     */
+    public double getConfidence() {
+        return mConfidence;
+    }
+
+    /**
+     * Nanoseconds since the capture time of the last detection, 0 when not tracking.
+     */
+    public long getCoastNs(long nowNs) {
+        return mTracking ? nowNs - mStateTimeNs : 0;
+    }
+
+    private void start(double leftRightLocation, double topBottomLocation, double sizePercentage, long timeNs) {
+        for (int i = 0; i < STATES; i++) {
+            mState[i] = 0;
+        }
+        mState[LEFT_RIGHT] = leftRightLocation;
+        mState[TOP_BOTTOM] = topBottomLocation;
+        mState[SIZE] = sizePercentage;
+        Mat state = mFilter.get_statePost();
+        state.put(0, 0, mState);
+        state.release();
+
+        // Position as uncertain as one measurement, velocity unknown.
+        Mat covariance = mFilter.get_errorCovPost();
+        covariance.setTo(new Scalar(0));
+        covariance.put(LEFT_RIGHT, LEFT_RIGHT, LOCATION_NOISE * LOCATION_NOISE);
+        covariance.put(TOP_BOTTOM, TOP_BOTTOM, LOCATION_NOISE * LOCATION_NOISE);
+        covariance.put(SIZE, SIZE, SIZE_NOISE * SIZE_NOISE);
+        covariance.put(LEFT_RIGHT + MEASUREMENTS, LEFT_RIGHT + MEASUREMENTS, 1);
+        covariance.put(TOP_BOTTOM + MEASUREMENTS, TOP_BOTTOM + MEASUREMENTS, 1);
+        covariance.put(SIZE + MEASUREMENTS, SIZE + MEASUREMENTS, 0.01);
+        covariance.get(0, 0, mCovariance);
+        covariance.release();
+
+        mTracking = true;
+        mStateTimeNs = timeNs;
+    }
+
+    /**
+     * Runs the filter's predict step for the time since the last detection. The transition and
+     * process noise use the real elapsed time since frames do not arrive at a fixed rate.
+     */
+    private void advance(long timeNs) {
+        double dt = (timeNs - mStateTimeNs) / 1e9;
+        for (int i = 0; i < MEASUREMENTS; i++) {
+            mTransition.put(i, i + MEASUREMENTS, dt);
+        }
+        // Piecewise constant acceleration noise for each position / velocity pair.
+        setProcessNoise(LEFT_RIGHT, LOCATION_ACCELERATION, dt);
+        setProcessNoise(TOP_BOTTOM, LOCATION_ACCELERATION, dt);
+        setProcessNoise(SIZE, SIZE_ACCELERATION, dt);
+        mFilter.predict().release();
+        mStateTimeNs = timeNs;
+    }
+
+    private void setProcessNoise(int index, double acceleration, double dt) {
+        double q = acceleration * acceleration;
+        int velocity = index + MEASUREMENTS;
+        mProcessNoise.put(index, index, q * dt * dt * dt * dt / 4);
+        mProcessNoise.put(index, velocity, q * dt * dt * dt / 2);
+        mProcessNoise.put(velocity, index, q * dt * dt * dt / 2);
+        mProcessNoise.put(velocity, velocity, q * dt * dt);
+    }
+
+    private void readState() {
+        Mat state = mFilter.get_statePost();
+        state.get(0, 0, mState);
+        state.release();
+        Mat covariance = mFilter.get_errorCovPost();
+        covariance.get(0, 0, mCovariance);
+        covariance.release();
+    }
+
+    private static double confidence(double leftRightVariance) {
+        double sigma = Math.sqrt(Math.max(0, leftRightVariance));
+        return Math.max(0, Math.min(1, 1 - sigma / MAX_LEFT_RIGHT_SIGMA));
+    }
+}
@@ -0,0 +1,171 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns a binary mask into filtered, rescaled contours plus their ContourStats. Shared by the
+ * blob detectors so every color target goes through the same dilate / findContours / filter steps.
+ *
+ * All of the working objects are kept between frames, so the results are only valid until the
+ * next call to extract.
+ */
+class ContourExtractor {
+    // Cache
+    private final Mat mDilatedMask = new Mat();
+    private final Mat mHierarchy = new Mat();
+    // Default 3x3 kernel, allocated once.
+    private final Mat mDilateKernel = new Mat();
+    // Raw findContours output, reused (and released) every frame.
+    private final List<MatOfPoint> mRawContours = new ArrayList<MatOfPoint>();
+    // Contours that passed the filter, backed by a recycled pool that grows to the largest count seen.
+    private final List<MatOfPoint> mContours = new ArrayList<MatOfPoint>();
+    private final List<MatOfPoint> mContourPool = new ArrayList<MatOfPoint>();
+    // Stats for each entry of mContours (same order), plus the recycled pool backing them.
+    private final List<ContourStats> mContourStats = new ArrayList<ContourStats>();
+    private final List<ContourStats> mContourStatsPool = new ArrayList<ContourStats>();
+    // Area of each raw contour so contourArea is only called once per contour.
+    private double[] mRawAreas = new double[16];
+    // Scratch space for reading contour points without boxing them into Point objects.
+    private int[] mPointBuffer = new int[256];
+    // Off until a detector shares its timings.
+    private StageTimings mTimings = new StageTimings();
+
+    void setStageTimings(StageTimings timings) {
+        mTimings = timings;
+    }
+
+    /**
+     * Dilates the mask, finds the external contours, drops those smaller than minContourArea times
+     * the largest one and scales the survivors back up to full image coordinates.
+     *
+     * @param mask           8 bit mask, non zero where the target color was found. Left unchanged.
+     * @param contourScale   Multiplier from mask coordinates to full image coordinates.
+     * @param minContourArea Fraction of the largest contour area a contour needs to be kept.
+     */
+    void extract(Mat mask, Scalar contourScale, double minContourArea) {
+        extract(mask, contourScale, minContourArea, null);
+    }
+
+    /**
+     * Same as extract, but shifts every contour by offset (in mask coordinates) before scaling. Used
+     * when the mask only covers a window of the full image.
+     */
+    void extract(Mat mask, Scalar contourScale, double minContourArea, Point offset) {
+        long t = mTimings.start();
+        Imgproc.dilate(mask, mDilatedMask, mDilateKernel);
+        t = mTimings.lap(StageTimings.DILATE, t);
+
+        releaseRawContours();
+        if (offset == null) {
+            Imgproc.findContours(mDilatedMask, mRawContours, mHierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+        } else {
+            Imgproc.findContours(mDilatedMask, mRawContours, mHierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE, offset);
+        }
+        t = mTimings.lap(StageTimings.FIND_CONTOURS, t);
+
+        // Find max contour area
+        int rawCount = mRawContours.size();
+        if (mRawAreas.length < rawCount) {
+            mRawAreas = new double[Math.max(rawCount, mRawAreas.length * 2)];
+        }
+        double maxArea = 0;
+        for (int i = 0; i < rawCount; i++) {
+            double area = Imgproc.contourArea(mRawContours.get(i));
+            mRawAreas[i] = area;
+            if (area > maxArea)
+                maxArea = area;
+        }
+
+        // Filter contours by area and resize to fit the original image size
+        double areaScale = contourScale.val[0] * contourScale.val[1];
+        mContours.clear();
+        mContourStats.clear();
+        for (int i = 0; i < rawCount; i++) {
+            if (mRawAreas[i] > minContourArea * maxArea) {
+                int index = mContours.size();
+                MatOfPoint pooled = obtainPooledContour(index);
+                Core.multiply(mRawContours.get(i), contourScale, pooled);
+                mContours.add(pooled);
+                ContourStats stats = obtainPooledStats(index);
+                mPointBuffer = stats.update(pooled, mRawAreas[i] * areaScale, mPointBuffer);
+                mContourStats.add(stats);
+            }
+        }
+        releaseRawContours();
+        mTimings.lap(StageTimings.CONTOUR_STATS, t);
+    }
+
+    /**
+     * Empties the results without touching the pools, used when a mask is known to be blank.
+     */
+    void clear() {
+        mContours.clear();
+        mContourStats.clear();
+    }
+
+    List<MatOfPoint> getContours() {
+        return mContours;
+    }
+
+    List<ContourStats> getContourStats() {
+        return mContourStats;
+    }
+
+    /**
+     * Largest contour found by the last extract, or null if there were none.
+     */
+    ContourStats getLargest() {
+        ContourStats largest = null;
+        for (int i = 0; i < mContourStats.size(); i++) {
+            ContourStats current = mContourStats.get(i);
+            if (largest == null || current.area > largest.area) {
+                largest = current;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * Objects and scratch capacity kept for reuse (pooled contours and stats plus the area and point
+     * buffer lengths). Stops changing once the pools have grown to fit the busiest frame.
+     */
+    int getPoolSize() {
+        return mContourPool.size() + mContourStatsPool.size() + mRawAreas.length + mPointBuffer.length;
+    }
+
+    /**
+     * Returns the recycled contour at the given pool index, growing the pool if needed.
+     * The native buffer is reused by Core.multiply when the point count has not grown.
+     */
+    private MatOfPoint obtainPooledContour(int index) {
+        if (index == mContourPool.size()) {
+            mContourPool.add(new MatOfPoint());
+        }
+        return mContourPool.get(index);
+    }
+
+    private ContourStats obtainPooledStats(int index) {
+        if (index == mContourStatsPool.size()) {
+            mContourStatsPool.add(new ContourStats());
+        }
+        return mContourStatsPool.get(index);
+    }
+
+    /**
+     * Frees the native memory of the raw findContours output now rather than waiting on finalizers.
+     */
+    private void releaseRawContours() {
+        for (int i = 0; i < mRawContours.size(); i++) {
+            mRawContours.get(i).release();
+        }
+        mRawContours.clear();
+    }
+}
@@ -0,0 +1,255 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Moments;
+
+/**
+ * Per-contour measurements computed once per frame by the ColorBlobDetector. Consumers (like
+ * findCone) read these instead of calling back into OpenCV for the area or moments again.
+ *
+ * Instances are recycled by the detector, so they are only valid until the next call to process.
+ */
+public class ContourStats {
+    /**
+     * The contour these stats describe (in full size image coordinates).
+     */
+    public MatOfPoint contour;
+
+    /**
+     * Area of the contour in full size image pixels.
+     */
+    public double area;
+
+    /**
+     * Smallest upright rectangle containing every point of the contour.
+     */
+    public final Rect boundingBox = new Rect();
+
+    /**
+     * Spatial, central and normalized moments of the contour polygon.
+     */
+    public final Moments moments = new Moments();
+
+    /**
+     * Centroid of the contour, only meaningful when area is greater than 0.
+     */
+    public double getCenterX() {
+        return moments.m10 / moments.m00;
+    }
+
+    public double getCenterY() {
+        return moments.m01 / moments.m00;
+    }
+
+    /**
+     * Recomputes every field for a new contour. The moments and bounding box are found in the same
+     * walk over the points.
+     *
+     * @param pointBuffer Scratch space for the CV_32SC2 point data, grown and returned if too small.
+     * @return The (possibly new) point buffer to reuse on the next call.
+     */
+    int[] update(MatOfPoint newContour, double newArea, int[] pointBuffer) {
+        contour = newContour;
+        area = newArea;
+        pointBuffer = readPoints(newContour, pointBuffer);
+        computeMoments(pointBuffer, (int) newContour.total(), moments, boundingBox);
+        return pointBuffer;
+    }
+
+    /**
+     * Bulk copies the x, y pairs of a contour into an int array with a single JNI call, instead of
+     * boxing every vertex into a Point like MatOfPoint.toArray does.
+     */
+    static int[] readPoints(MatOfPoint contour, int[] pointBuffer) {
+        int needed = (int) contour.total() * 2;
+        if (pointBuffer == null || pointBuffer.length < needed) {
+            pointBuffer = new int[Math.max(needed, pointBuffer == null ? 64 : pointBuffer.length * 2)];
+        }
+        if (needed > 0) {
+            contour.get(0, 0, pointBuffer);
+        }
+        return pointBuffer;
+    }
+
+    /**
+     * Green's theorem moments of a closed polygon (same math as cv::contourMoments) on interleaved
+     * x, y ints. Also fills in the bounding box when one is given.
+     */
+    static void computeMoments(int[] xy, int lpt, Moments m, Rect bounds) {
+        clear(m);
+        if (lpt == 0) {
+            if (bounds != null) {
+                bounds.x = bounds.y = bounds.width = bounds.height = 0;
+            }
+            return;
+        }
+
+        double a00 = 0, a10 = 0, a01 = 0, a20 = 0, a11 = 0, a02 = 0, a30 = 0, a21 = 0, a12 = 0, a03 = 0;
+        double xi, yi, xi2, yi2, xi_1, yi_1, xi_12, yi_12, dxy, xii_1, yii_1;
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+        xi_1 = xy[2 * (lpt - 1)];
+        yi_1 = xy[2 * (lpt - 1) + 1];
+
+        xi_12 = xi_1 * xi_1;
+        yi_12 = yi_1 * yi_1;
+
+        for (int i = 0; i < lpt; i++) {
+            int x = xy[2 * i];
+            int y = xy[2 * i + 1];
+
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+
+            xi = x;
+            yi = y;
+            xi2 = xi * xi;
+            yi2 = yi * yi;
+            dxy = xi_1 * yi - xi * yi_1;
+            xii_1 = xi_1 + xi;
+            yii_1 = yi_1 + yi;
+
+            a00 += dxy;
+            a10 += dxy * xii_1;
+            a01 += dxy * yii_1;
+            a20 += dxy * (xi_1 * xii_1 + xi2);
+            a11 += dxy * (xi_1 * (yii_1 + yi_1) + xi * (yii_1 + yi));
+            a02 += dxy * (yi_1 * yii_1 + yi2);
+            a30 += dxy * xii_1 * (xi_12 + xi2);
+            a03 += dxy * yii_1 * (yi_12 + yi2);
+            a21 += dxy * (xi_12 * (3 * yi_1 + yi) + 2 * xi * xi_1 * yii_1 +
+                    xi2 * (yi_1 + 3 * yi));
+            a12 += dxy * (yi_12 * (3 * xi_1 + xi) + 2 * yi * yi_1 * xii_1 +
+                    yi2 * (xi_1 + 3 * xi));
+            xi_1 = xi;
+            yi_1 = yi;
+            xi_12 = xi2;
+            yi_12 = yi2;
+        }
+
+        if (bounds != null) {
+            // Same convention as Imgproc.boundingRect, width and height include both edge pixels.
+            bounds.x = minX;
+            bounds.y = minY;
+            bounds.width = maxX - minX + 1;
+            bounds.height = maxY - minY + 1;
+        }
+        scaleMoments(m, a00, a10, a01, a20, a11, a02, a30, a21, a12, a03);
+    }
+
+    /**
+     * Original Point[] version of computeMoments. No longer used per frame, kept as the reference
+     * implementation that the int[] version is checked and benchmarked against.
+     */
+    static void computeMoments(Point[] pts, int lpt, Moments m, Rect bounds) {
+        clear(m);
+        if (lpt == 0) {
+            if (bounds != null) {
+                bounds.x = bounds.y = bounds.width = bounds.height = 0;
+            }
+            return;
+        }
+
+        double a00 = 0, a10 = 0, a01 = 0, a20 = 0, a11 = 0, a02 = 0, a30 = 0, a21 = 0, a12 = 0, a03 = 0;
+        double xi, yi, xi2, yi2, xi_1, yi_1, xi_12, yi_12, dxy, xii_1, yii_1;
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+
+        xi_1 = pts[lpt - 1].x;
+        yi_1 = pts[lpt - 1].y;
+
+        xi_12 = xi_1 * xi_1;
+        yi_12 = yi_1 * yi_1;
+
+        for (int i = 0; i < lpt; i++) {
+            xi = pts[i].x;
+            yi = pts[i].y;
+
+            if (xi < minX) minX = xi;
+            if (xi > maxX) maxX = xi;
+            if (yi < minY) minY = yi;
+            if (yi > maxY) maxY = yi;
+
+            xi2 = xi * xi;
+            yi2 = yi * yi;
+            dxy = xi_1 * yi - xi * yi_1;
+            xii_1 = xi_1 + xi;
+            yii_1 = yi_1 + yi;
+
+            a00 += dxy;
+            a10 += dxy * xii_1;
+            a01 += dxy * yii_1;
+            a20 += dxy * (xi_1 * xii_1 + xi2);
+            a11 += dxy * (xi_1 * (yii_1 + yi_1) + xi * (yii_1 + yi));
+            a02 += dxy * (yi_1 * yii_1 + yi2);
+            a30 += dxy * xii_1 * (xi_12 + xi2);
+            a03 += dxy * yii_1 * (yi_12 + yi2);
+            a21 += dxy * (xi_12 * (3 * yi_1 + yi) + 2 * xi * xi_1 * yii_1 +
+                    xi2 * (yi_1 + 3 * yi));
+            a12 += dxy * (yi_12 * (3 * xi_1 + xi) + 2 * yi * yi_1 * xii_1 +
+                    yi2 * (xi_1 + 3 * xi));
+            xi_1 = xi;
+            yi_1 = yi;
+            xi_12 = xi2;
+            yi_12 = yi2;
+        }
+
+        if (bounds != null) {
+            // Same convention as Imgproc.boundingRect, width and height include both edge pixels.
+            bounds.x = (int) minX;
+            bounds.y = (int) minY;
+            bounds.width = (int) (maxX - minX) + 1;
+            bounds.height = (int) (maxY - minY) + 1;
+        }
+        scaleMoments(m, a00, a10, a01, a20, a11, a02, a30, a21, a12, a03);
+    }
+
+    /**
+     * Turns the raw Green's theorem sums into moments. Leaves m cleared for degenerate polygons.
+     */
+    static void scaleMoments(Moments m, double a00, double a10, double a01, double a20, double a11,
+                             double a02, double a30, double a21, double a12, double a03) {
+        float FLT_EPSILON = 1.19209e-07f;
+        if (Math.abs(a00) > FLT_EPSILON) {
+            double db1_2, db1_6, db1_12, db1_24, db1_20, db1_60;
+
+            if (a00 > 0) {
+                db1_2 = 0.5;
+                db1_6 = 0.16666666666666666666666666666667;
+                db1_12 = 0.083333333333333333333333333333333;
+                db1_24 = 0.041666666666666666666666666666667;
+                db1_20 = 0.05;
+                db1_60 = 0.016666666666666666666666666666667;
+            } else {
+                db1_2 = -0.5;
+                db1_6 = -0.16666666666666666666666666666667;
+                db1_12 = -0.083333333333333333333333333333333;
+                db1_24 = -0.041666666666666666666666666666667;
+                db1_20 = -0.05;
+                db1_60 = -0.016666666666666666666666666666667;
+            }
+
+            // spatial moments
+            m.m00 = a00 * db1_2;
+            m.m10 = a10 * db1_6;
+            m.m01 = a01 * db1_6;
+            m.m20 = a20 * db1_12;
+            m.m11 = a11 * db1_24;
+            m.m02 = a02 * db1_12;
+            m.m30 = a30 * db1_20;
+            m.m21 = a21 * db1_60;
+            m.m12 = a12 * db1_60;
+            m.m03 = a03 * db1_20;
+
+            m.completeState();
+        }
+    }
+
+    private static void clear(Moments m) {
+        m.m00 = m.m10 = m.m01 = m.m20 = m.m11 = m.m02 = m.m30 = m.m21 = m.m12 = m.m03 = 0;
+        m.completeState();
+    }
+}
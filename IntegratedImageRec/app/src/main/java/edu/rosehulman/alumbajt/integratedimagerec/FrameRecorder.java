@@ -0,0 +1,112 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.opencv.core.Mat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends raw NV21 camera frames to a memory mapped file so a run on the field can be replayed at a
+ * desk with FrameReplayer. The file is written through mapped segments, so recording a frame is a
+ * single copy into the page cache with no write system call.
+ *
+ * File layout (little endian):
+ * <pre>
+ *     header: int magic ("NV21"), int version, int width, int height
+ *     frame:  long captureTimeNs, int length, length bytes of NV21 data
+ * </pre>
+ */
+public class FrameRecorder {
+    static final int MAGIC = 0x3132564E; // "NV21" read as a little endian int
+    static final int VERSION = 1;
+    static final int FILE_HEADER_BYTES = 16;
+    static final int FRAME_HEADER_BYTES = 12;
+
+    // Size of each mapped window, the file grows by this much at a time. FrameReplayer reads through
+    // windows of the same size, since a single mapping can't be larger than 2 GB.
+    static final int SEGMENT_BYTES = 32 * 1024 * 1024;
+
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final int mFrameBytes;
+    private final byte[] mFrameBuffer;
+    private MappedByteBuffer mSegment;
+    private long mSegmentStart;
+    private long mPosition;
+    private int mFrameCount = 0;
+    private boolean mClosed = false;
+
+    /**
+     * Creates (or replaces) the file and writes the header.
+     *
+     * @param width  Width of the camera frames in pixels.
+     * @param height Height of the camera frames in pixels.
+     */
+    public FrameRecorder(File file, int width, int height) throws IOException {
+        mFile = new RandomAccessFile(file, "rw");
+        mFile.setLength(0);
+        mChannel = mFile.getChannel();
+        mFrameBytes = width * height * 3 / 2;
+        mFrameBuffer = new byte[mFrameBytes];
+        mapSegment(0, FILE_HEADER_BYTES + FRAME_HEADER_BYTES + mFrameBytes);
+        mSegment.putInt(MAGIC);
+        mSegment.putInt(VERSION);
+        mSegment.putInt(width);
+        mSegment.putInt(height);
+        mPosition = FILE_HEADER_BYTES;
+    }
+
+    /**
+     * Copies one frame into the file.
+     *
+     * @param yuvFrame      NV21 frame as returned by CvCameraViewFrame.yuv().
+     * @param captureTimeNs Capture time of the frame, replayed as the frame timestamp.
+     */
+    public synchronized void record(Mat yuvFrame, long captureTimeNs) throws IOException {
+        if (mClosed) {
+            return;
+        }
+        int recordBytes = FRAME_HEADER_BYTES + mFrameBytes;
+        if (mPosition + recordBytes > mSegmentStart + mSegment.capacity()) {
+            mapSegment(mPosition, recordBytes);
+        }
+        yuvFrame.get(0, 0, mFrameBuffer);
+        mSegment.position((int) (mPosition - mSegmentStart));
+        mSegment.putLong(captureTimeNs);
+        mSegment.putInt(mFrameBytes);
+        mSegment.put(mFrameBuffer);
+        mPosition += recordBytes;
+        mFrameCount++;
+    }
+
+    public synchronized int getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * Flushes the mapped data and trims the unused end of the last segment.
+     */
+    public synchronized void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        mSegment.force();
+        mSegment = null;
+        mChannel.truncate(mPosition);
+        mFile.close();
+    }
+
+    private void mapSegment(long start, int minBytes) throws IOException {
+        if (mSegment != null) {
+            mSegment.force();
+        }
+        mSegmentStart = start;
+        mSegment = mChannel.map(FileChannel.MapMode.READ_WRITE, start, Math.max(SEGMENT_BYTES, minBytes));
+        mSegment.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
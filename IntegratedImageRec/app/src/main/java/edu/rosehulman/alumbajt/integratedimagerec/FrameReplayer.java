@@ -0,0 +1,247 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads frames written by FrameRecorder. Has no Android dependencies, so main can replay a recording
+ * through ColorBlobDetector (or YuvBlobDetector) and the findCone math on a desktop JVM, using the
+ * desktop OpenCV 3.0 jar and native library:
+ * <pre>
+ *     java -Djava.library.path=&lt;opencv native dir&gt; -cp opencv-300.jar:&lt;app classes&gt; \
+ *         edu.rosehulman.alumbajt.integratedimagerec.FrameReplayer frames.nv21 10 255 255 25 50 50 [yuv]
+ * </pre>
+ * One line is printed per frame (detection result and processing time), then the overall fps.
+ *
+ * The file is read through a window of mapped segments that slides forward, the same way
+ * FrameRecorder writes it, since a single mapping can't cover a recording past 2 GB.
+ */
+public class FrameReplayer {
+    private final RandomAccessFile mFile;
+    private final FileChannel mChannel;
+    private final long mLength;
+    private final int mSegmentBytes;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mFrameBytes;
+    // Mapped window of the file starting at mSegmentStart, moved forward as frames are read.
+    private MappedByteBuffer mSegment;
+    private long mSegmentStart;
+    private long mPosition;
+    private byte[] mFrameBuffer = new byte[0];
+    private long mLastCaptureTimeNs;
+
+    public FrameReplayer(File file) throws IOException {
+        this(file, FrameRecorder.SEGMENT_BYTES);
+    }
+
+    /**
+     * @param segmentBytes Size of the mapped window, a frame record larger than this gets its own.
+     */
+    FrameReplayer(File file, int segmentBytes) throws IOException {
+        mFile = new RandomAccessFile(file, "r");
+        mChannel = mFile.getChannel();
+        mLength = mFile.length();
+        mSegmentBytes = segmentBytes;
+        try {
+            if (!map(0, FrameRecorder.FILE_HEADER_BYTES) || mSegment.getInt() != FrameRecorder.MAGIC) {
+                throw new IOException("Not a recorded frame file: " + file);
+            }
+            int version = mSegment.getInt();
+            if (version != FrameRecorder.VERSION) {
+                throw new IOException("Unsupported frame file version " + version);
+            }
+            mWidth = mSegment.getInt();
+            mHeight = mSegment.getInt();
+            if (mWidth <= 0 || mHeight <= 0) {
+                throw new IOException("Bad frame size " + mWidth + "x" + mHeight + " in " + file);
+            }
+        } catch (IOException e) {
+            mFile.close();
+            throw e;
+        }
+        mFrameBytes = mWidth * mHeight * 3 / 2;
+        mPosition = FrameRecorder.FILE_HEADER_BYTES;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Copies the next frame into yuvFrame (a height * 3 / 2 by width CV_8UC1 Mat, allocated if needed).
+     *
+     * @return False at the end of the recording.
+     * @throws IOException If the file is corrupt (a frame length that doesn't match the header).
+     */
+    public boolean next(Mat yuvFrame) throws IOException {
+        if (!next()) {
+            return false;
+        }
+        yuvFrame.create(mHeight + mHeight / 2, mWidth, CvType.CV_8UC1);
+        yuvFrame.put(0, 0, mFrameBuffer);
+        return true;
+    }
+
+    /**
+     * Reads the next frame's NV21 bytes into the buffer returned by getLastFrame.
+     *
+     * @return False at the end of the recording.
+     * @throws IOException If the file is corrupt (a frame length that doesn't match the header).
+     */
+    boolean next() throws IOException {
+        if (!map(mPosition, FrameRecorder.FRAME_HEADER_BYTES)) {
+            return false;
+        }
+        long captureTimeNs = mSegment.getLong();
+        int length = mSegment.getInt();
+        // A recording that was never closed ends in zero filled space.
+        if (length == 0) {
+            return false;
+        }
+        if (length != mFrameBytes) {
+            throw new IOException("Corrupt recording: frame at byte " + mPosition + " has " + length
+                    + " bytes, expected " + mFrameBytes + " for " + mWidth + "x" + mHeight);
+        }
+        long dataStart = mPosition + FrameRecorder.FRAME_HEADER_BYTES;
+        // A recording cut off in the middle of a frame just ends early.
+        if (!map(dataStart, length)) {
+            return false;
+        }
+        if (mFrameBuffer.length != length) {
+            mFrameBuffer = new byte[length];
+        }
+        mSegment.get(mFrameBuffer);
+        mPosition = dataStart + length;
+        mLastCaptureTimeNs = captureTimeNs;
+        return true;
+    }
+
+    /**
+     * NV21 bytes of the frame read by the last call to next, overwritten by the next call.
+     */
+    byte[] getLastFrame() {
+        return mFrameBuffer;
+    }
+
+    /**
+     * Capture time of the frame returned by the last call to next.
+     */
+    public long getLastCaptureTimeNs() {
+        return mLastCaptureTimeNs;
+    }
+
+    public void rewind() {
+        mPosition = FrameRecorder.FILE_HEADER_BYTES;
+    }
+
+    public void close() throws IOException {
+        mSegment = null;
+        mFile.close();
+    }
+
+    /**
+     * Positions mSegment at the given file offset with at least bytes left in it, mapping the next
+     * window if the current one doesn't cover them.
+     *
+     * @return False if the file ends before position + bytes.
+     */
+    private boolean map(long position, int bytes) throws IOException {
+        if (position + bytes > mLength) {
+            return false;
+        }
+        if (mSegment == null || position < mSegmentStart
+                || position + bytes > mSegmentStart + mSegment.capacity()) {
+            long size = Math.min(Math.max(mSegmentBytes, bytes), mLength - position);
+            mSegmentStart = position;
+            mSegment = mChannel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            mSegment.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        mSegment.position((int) (position - mSegmentStart));
+        return true;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.err.println("Usage: FrameReplayer <file> <targetH> <targetS> <targetV> [rangeH rangeS rangeV] [yuv]");
+            System.exit(1);
+        }
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        FrameReplayer replayer = new FrameReplayer(new File(args[0]));
+        Scalar target = new Scalar(Double.parseDouble(args[1]), Double.parseDouble(args[2]), Double.parseDouble(args[3]));
+        Scalar range = new Scalar(25, 50, 50, 0);
+        if (args.length >= 7) {
+            range = new Scalar(Double.parseDouble(args[4]), Double.parseDouble(args[5]), Double.parseDouble(args[6]), 0);
+        }
+        boolean useYuv = "yuv".equals(args[args.length - 1]);
+        int width = replayer.getWidth();
+        int height = replayer.getHeight();
+        double minSizePercentage = 0.001;
+
+        ColorBlobDetector detector = new ColorBlobDetector();
+        detector.setAdaptivePyramidEnabled(true);
+        detector.setColorRadius(range);
+        detector.setHsvColor(target);
+        YuvBlobDetector yuvDetector = new YuvBlobDetector();
+        yuvDetector.setColorRadius(range);
+        yuvDetector.setHsvColor(target);
+        yuvDetector.setBlobLabelingEnabled(true);
+
+        Mat yuv = new Mat();
+        Mat rgba = new Mat();
+        double[] coneResult = new double[3];
+        int frames = 0;
+        int found = 0;
+        long firstCaptureNs = 0;
+        long totalProcessNs = 0;
+        System.out.println("frame,captureMs,processMs,found,leftRight,topBottom,size");
+        while (replayer.next(yuv)) {
+            if (frames == 0) {
+                firstCaptureNs = replayer.getLastCaptureTimeNs();
+            }
+            long startNs = System.nanoTime();
+            boolean coneFound;
+            if (useYuv) {
+                yuvDetector.process(yuv, width, height);
+                coneFound = ConeLocator.findConeInBlobs(yuvDetector.getBlobs(), minSizePercentage, width, height, coneResult);
+            } else {
+                // Same conversion as JavaCameraView's rgba().
+                Imgproc.cvtColor(yuv, rgba, Imgproc.COLOR_YUV2RGBA_NV21, 4);
+                detector.process(rgba);
+                coneFound = ConeLocator.findCone(detector.getContourStats(), minSizePercentage, width, height, coneResult);
+            }
+            long processNs = System.nanoTime() - startNs;
+            totalProcessNs += processNs;
+            if (coneFound) {
+                found++;
+            }
+            System.out.println(String.format("%d,%.1f,%.3f,%b,%.3f,%.3f,%.5f", frames,
+                    (replayer.getLastCaptureTimeNs() - firstCaptureNs) / 1e6, processNs / 1e6, coneFound,
+                    coneFound ? coneResult[0] : 0, coneFound ? coneResult[1] : 0, coneFound ? coneResult[2] : 0));
+            frames++;
+        }
+        replayer.close();
+
+        if (frames > 0) {
+            System.out.println(String.format("%d frames (%dx%d), cone found in %d, %.2f ms/frame, %.1f fps",
+                    frames, width, height, found, totalProcessNs / 1e6 / frames, frames * 1e9 / totalProcessNs));
+        } else {
+            System.out.println("No frames in recording");
+        }
+    }
+}
@@ -29,7 +29,19 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
      * Constant used with logging that you'll see later.
      */
     public static final String TAG = "GolfBallDelivery";
-    protected long mFirebaseUpdateCounter;
+
+    /**
+     * How often each slow consumer runs, independent of the control loop rate.
+     */
+    private static final int JUMBO_INTERVAL_MS = 500;
+    private static final int FIREBASE_INTERVAL_MS = 1000;
+    private static final int SPEECH_INTERVAL_MS = 1000;
+
+    /**
+     * Latest state announcement waiting for the speech subscriber, null when there is none. Only
+     * the newest is spoken when states change faster than SPEECH_INTERVAL_MS.
+     */
+    private volatile String mPendingSpeech;
     private BallColor ball1Color;
     private BallColor ball2Color;
     private BallColor ball3Color;
@@ -42,6 +54,8 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
     private int mDrivingTimer = 0;
     private double mAverageHeading = 0;
     private double AVERAGE_AMOUNT = 1;
+    // Set once the delayed move out of a GPS drive state has been posted. Control thread only.
+    private boolean mArrivalScheduled = false;
 
     public enum State {
         READY_FOR_MISSION,
@@ -56,7 +70,10 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
         SEEKING_HOME
     }
 
-    public State mState;
+    /**
+     * Changed on the control thread (or before it starts), also read by the UI thread.
+     */
+    public volatile State mState;
 
     /**
      * An enum used for variables when a ball color needs to be referenced.
@@ -134,12 +151,12 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
     /**
      * Time when the state began (saved as the number of millisecond since epoch).
      */
-    private long mStateStartTime;
+    private volatile long mStateStartTime;
 
     /**
      * Time when the match began, ie when Go! was pressed (saved as the number of millisecond since epoch).
      */
-    private long mMatchStartTime;
+    private volatile long mMatchStartTime;
 
     /**
      * Constant that holds the maximum length of the match (saved in milliseconds).
@@ -206,6 +223,29 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
         }
         mScripts = new Scripts(this);
         setState(State.READY_FOR_MISSION);
+
+        mLoopDecimator.subscribe(JUMBO_INTERVAL_MS, true, new Runnable() {
+            @Override
+            public void run() {
+                updateJumbo();
+            }
+        });
+        mLoopDecimator.subscribe(FIREBASE_INTERVAL_MS, false, new Runnable() {
+            @Override
+            public void run() {
+                updateFirebase();
+            }
+        });
+        mLoopDecimator.subscribe(SPEECH_INTERVAL_MS, false, new Runnable() {
+            @Override
+            public void run() {
+                String speech = mPendingSpeech;
+                if (speech != null) {
+                    mPendingSpeech = null;
+                    speak(speech);
+                }
+            }
+        });
     }
 
     /**
@@ -235,36 +275,113 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
 
     // --------------------------- Methods added ---------------------------
 
+    /**
+     * Match time left in the mm:ss format.
+     */
+    private String getMatchTimeRemaining() {
+        long timeRemainingSeconds = MATCH_LENGTH_MS / 1000;
+        if (mState != State.READY_FOR_MISSION) {
+            timeRemainingSeconds = (MATCH_LENGTH_MS - getMatchTimeMs()) / 1000;
+        }
+        return getString(R.string.time_format, timeRemainingSeconds / 60, timeRemainingSeconds % 60);
+    }
+
     @Override
-    public void loop() {
-        super.loop();
+    protected void updateUi() {
+        super.updateUi();
         mStateTimeTextView.setText("" + getStateTimeMs() / 1000);
         mGuessXYTextView.setText("(" + (int) mGuessX + ", " + (int) mGuessY + ")");
+        mMatchTimeTextView.setText(getMatchTimeRemaining());
+        mLeftDutyCycleTextView.setText("Left\n" + mLeftDutyCycle);
+        mRightDutyCycleTextView.setText("Right\n" + mRightDutyCycle);
+    }
 
+    /**
+     * Refreshes the jumbo view (UI thread, every JUMBO_INTERVAL_MS).
+     */
+    private void updateJumbo() {
         mJumboYTextView.setText("" + (int) mGuessX);
         mJumboXTextView.setText("" + (int) mGuessY);
 
-        // Match timer.
-        long timeRemainingSeconds = MATCH_LENGTH_MS / 1000;
-        if (mState != State.READY_FOR_MISSION) {
-            timeRemainingSeconds = (MATCH_LENGTH_MS - getMatchTimeMs()) / 1000;
-            if (getMatchTimeMs() > MATCH_LENGTH_MS) {
-                setState(State.READY_FOR_MISSION);
+        //Code just for setting background colors
+        if (mConeFound) {
+            if (mConeSize > 0.07) {
+                mBackgroundJumbo.setBackgroundColor(Color.parseColor("#ff8000"));
+            } else {
+                mBackgroundJumbo.setBackgroundColor(Color.GRAY);
             }
         }
-        String matchTime = getString(R.string.time_format, timeRemainingSeconds / 60, timeRemainingSeconds % 60);
-        mMatchTimeTextView.setText(matchTime);
-        //Once every 2 seconds (20 calls to this function) send the match and state times to Firebase
-        mFirebaseUpdateCounter++;
+        else if (mCurrentGpsHeading != NO_HEADING) {
+            mBackgroundJumbo.setBackgroundColor(Color.GREEN);
+        } else {
+            mBackgroundJumbo.setBackgroundColor(Color.GRAY);
+        }
+    }
+
+    /**
+     * Loop timings are split by FSM state.
+     */
+    @Override
+    protected int getLoopPhase() {
+        return mState.ordinal();
+    }
+
+    @Override
+    protected String[] getLoopPhaseNames() {
+        State[] states = State.values();
+        String[] names = new String[states.length];
+        for (int i = 0; i < states.length; i++) {
+            names[i] = states[i].name();
+        }
+        return names;
+    }
+
+    /**
+     * Sends the match and state times, and the distance to the GPS target the FSM steers by while
+     * driving, to Firebase (control thread, every FIREBASE_INTERVAL_MS).
+     */
+    private void updateFirebase() {
+        if (mState == State.READY_FOR_MISSION) {
+            return;
+        }
+        //send the match time
+        mFirebaseRef.child("time").child("matchTime").setValue(getMatchTimeRemaining());
 
-        if (mFirebaseUpdateCounter % 20 == 0 && mState != State.READY_FOR_MISSION) {
-            //send the match time
-            mFirebaseRef.child("time").child("matchTime").setValue(matchTime);
+        //send the state time
+        mFirebaseRef.child("time").child("stateTime").setValue(getStateTimeMs() / 1000);
 
-            //send the match time
-            mFirebaseRef.child("time").child("stateTime").setValue(getStateTimeMs() / 1000);
+        double targetX, targetY;
+        switch (mState) {
+            case DRIVE_TOWARDS_NEAR_BALL:
+                targetX = NEAR_BALL_GPS_X;
+                targetY = mNearBallGpsY;
+                break;
+            case DRIVE_TOWARDS_FAR_BALL:
+                targetX = FAR_BALL_GPS_X;
+                targetY = mFarBallGpsY;
+                break;
+            case DRIVE_TOWARD_HOME:
+            case SEEKING_HOME:
+                targetX = 0;
+                targetY = 0;
+                break;
+            default:
+                return;
         }
+        mFirebaseRef.child("MOVING VALUES").child("distance").setValue(getDistanceToGoal(targetX, targetY));
+        mFirebaseRef.child("MOVING VALUES").child("seeking target at: ").setValue((long) targetX + ",  " + (long) targetY);
+    }
 
+    @Override
+    public void loop() {
+        super.loop();
+        // Match timer.
+        if (mState != State.READY_FOR_MISSION && getMatchTimeMs() > MATCH_LENGTH_MS) {
+            setState(State.READY_FOR_MISSION);
+        }
+
+        // Steer by the filtered cone, which keeps predicting through skipped or dropped frames.
+        predictCone();
         switch (mState) {
 
             case READY_FOR_MISSION:
@@ -274,39 +391,14 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
                     sendWheelSpeed(0, 0);
                     setState(State.NEAR_BALL_SCRIPT);
                 }
-                if (getDistanceToGoal(NEAR_BALL_GPS_X, mNearBallGpsY) <= 20) {
-                    sendWheelSpeed(0, 0);
-                    mCommandHandler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            setState(State.NEAR_BALL_IMAGE_REC);
-                        }
-                    }, 2000);
-                }
-
-
-                seekTargetAt(NEAR_BALL_GPS_X, mNearBallGpsY);
-                mFirebaseRef.child("MOVING VALUES").child("distance").setValue(getDistanceToGoal(NEAR_BALL_GPS_X, mNearBallGpsY));
-                mFirebaseRef.child("MOVING VALUES").child("seeking target at: ").setValue(NEAR_BALL_GPS_X + ",  " + mNearBallGpsY);
-
+                driveTowards(NEAR_BALL_GPS_X, mNearBallGpsY, State.NEAR_BALL_IMAGE_REC);
                 break;
             case NEAR_BALL_IMAGE_REC:
                 if (getStateTimeMs() > 10000) {
                     sendWheelSpeed(0, 0);
                     setState(State.NEAR_BALL_SCRIPT);
-                } else if (!mConeFound) {
-                    sendWheelSpeed(DEFAULT_SPEED  , DEFAULT_SPEED/8 );
                 } else {
-                    if (mConeSize > 0.07) {
-                        sendWheelSpeed(0, 0);
-                        setState(State.NEAR_BALL_SCRIPT);
-                    } else if (mConeLeftRightLocation > 0.25) {
-                        sendWheelSpeed(DEFAULT_SPEED / 2, DEFAULT_SPEED / 4);
-                    } else if (mConeLeftRightLocation < -0.25) {
-                        sendWheelSpeed(DEFAULT_SPEED / 4, DEFAULT_SPEED / 2);
-                    } else {
-                        sendWheelSpeed(DEFAULT_SPEED / 2, DEFAULT_SPEED / 2);
-                    }
+                    approachCone(State.NEAR_BALL_SCRIPT);
                 }
                 break;
             case NEAR_BALL_SCRIPT:
@@ -318,39 +410,14 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
                     sendWheelSpeed(0, 0);
                     setState(State.FAR_BALL_SCRIPT);
                 }
-                if (getDistanceToGoal(FAR_BALL_GPS_X, mFarBallGpsY) <= 20) {
-                    sendWheelSpeed(0, 0);
-                    mCommandHandler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            setState(State.FAR_BALL_IMAGE_REC);
-                        }
-                    }, 2000);
-                }
-
-                seekTargetAt(FAR_BALL_GPS_X, mFarBallGpsY);
-                mFirebaseRef.child("MOVING VALUES").child("distance").setValue(getDistanceToGoal(FAR_BALL_GPS_X, mFarBallGpsY));
-                mFirebaseRef.child("MOVING VALUES").child("seeking target at: ").setValue(FAR_BALL_GPS_X + ",  " + mFarBallGpsY);
-
-
+                driveTowards(FAR_BALL_GPS_X, mFarBallGpsY, State.FAR_BALL_IMAGE_REC);
                 break;
             case FAR_BALL_IMAGE_REC:
                 if (getStateTimeMs() > 10000) {
                     sendWheelSpeed(0, 0);
                     setState(State.FAR_BALL_SCRIPT);
-                } else if (!mConeFound) {
-                    sendWheelSpeed(DEFAULT_SPEED  , DEFAULT_SPEED/8 );
                 } else {
-                    if (mConeSize > 0.07) {
-                        sendWheelSpeed(0, 0);
-                        setState(State.FAR_BALL_SCRIPT);
-                    } else if (mConeLeftRightLocation > 0.25) {
-                        sendWheelSpeed(DEFAULT_SPEED / 2, DEFAULT_SPEED / 4);
-                    } else if (mConeLeftRightLocation < -0.25) {
-                        sendWheelSpeed(DEFAULT_SPEED / 4, DEFAULT_SPEED / 2);
-                    } else {
-                        sendWheelSpeed(DEFAULT_SPEED / 2, DEFAULT_SPEED / 2);
-                    }
+                    approachCone(State.FAR_BALL_SCRIPT);
                 }
                 break;
             case FAR_BALL_SCRIPT:
@@ -364,8 +431,6 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
                     setState(State.WAITING_FOR_PICKUP);
                 }
 
-                mFirebaseRef.child("MOVING VALUES").child("distance").setValue(getDistanceToGoal(0, 0));
-                mFirebaseRef.child("MOVING VALUES").child("seeking target at: ").setValue(0 + ",  " + 0);
                 seekTargetAt(0, 0);
                 break;
             case WAITING_FOR_PICKUP:
@@ -381,67 +446,129 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
                 if (getStateTimeMs() > 5000) {
                     setState(State.WAITING_FOR_PICKUP);
                 } else if (getDistanceToGoal(0, 0) >= 20) {
-
-                    mFirebaseRef.child("MOVING VALUES").child("distance").setValue(getDistanceToGoal(0, 0));
-                    mFirebaseRef.child("MOVING VALUES").child("seeking target at: ").setValue(0 + ",  " + 0);
                     seekTargetAt(0, 0);
-
-                } else if (!mConeFound) {
-                    sendWheelSpeed(DEFAULT_SPEED  , DEFAULT_SPEED/8 );
                 } else {
-                    if (mConeSize > 0.07) {
-                        sendWheelSpeed(0, 0);
-                        setState(State.WAITING_FOR_PICKUP);
-                    } else if (mConeLeftRightLocation > 0.25) {
-                        sendWheelSpeed(DEFAULT_SPEED / 2, DEFAULT_SPEED / 4);
-                    } else if (mConeLeftRightLocation < -0.25) {
-                        sendWheelSpeed(DEFAULT_SPEED / 4, DEFAULT_SPEED / 2);
-                    } else {
-                        sendWheelSpeed(DEFAULT_SPEED / 2, DEFAULT_SPEED / 2);
-                    }
+                    approachCone(State.WAITING_FOR_PICKUP);
                 }
                 break;
         }
-        //Code just for setting background colors
-        if (mConeFound) {
-            if (mConeSize > 0.07) {
-                mBackgroundJumbo.setBackgroundColor(Color.parseColor("#ff8000"));
-            } else {
-                mBackgroundJumbo.setBackgroundColor(Color.GRAY);
+    }
+
+    /**
+     * Reacts to a new vision result right away instead of at the next loop. The loop still
+     * handles the timeouts and keeps steering by the prediction between results.
+     */
+    @Override
+    protected void onConeUpdate() {
+        super.onConeUpdate();
+        switch (mState) {
+            case NEAR_BALL_IMAGE_REC:
+                predictCone();
+                approachCone(State.NEAR_BALL_SCRIPT);
+                break;
+            case FAR_BALL_IMAGE_REC:
+                predictCone();
+                approachCone(State.FAR_BALL_SCRIPT);
+                break;
+            case SEEKING_HOME:
+                if (getDistanceToGoal(0, 0) < 20) {
+                    predictCone();
+                    approachCone(State.WAITING_FOR_PICKUP);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Reacts to a new GPS reading right away instead of at the next loop.
+     */
+    @Override
+    protected void onGpsUpdate() {
+        super.onGpsUpdate();
+        switch (mState) {
+            case DRIVE_TOWARDS_NEAR_BALL:
+                driveTowards(NEAR_BALL_GPS_X, mNearBallGpsY, State.NEAR_BALL_IMAGE_REC);
+                break;
+            case DRIVE_TOWARDS_FAR_BALL:
+                driveTowards(FAR_BALL_GPS_X, mFarBallGpsY, State.FAR_BALL_IMAGE_REC);
+                break;
+            case DRIVE_TOWARD_HOME:
+                if (getDistanceToGoal(0, 0) <= 20) {
+                    setState(State.WAITING_FOR_PICKUP);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Seeks the GPS target. Once within 20 feet, stops and moves to arrivedState 2 seconds later
+     * (scheduled only once per state, however many loops or GPS readings see the arrival).
+     */
+    private void driveTowards(double x, double y, final State arrivedState) {
+        if (getDistanceToGoal(x, y) <= 20) {
+            sendWheelSpeed(0, 0);
+            if (!mArrivalScheduled) {
+                mArrivalScheduled = true;
+                mCommandHandler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        setState(arrivedState);
+                    }
+                }, 2000);
             }
         }
-        else if (mCurrentGpsHeading != NO_HEADING) {
-            mBackgroundJumbo.setBackgroundColor(Color.GREEN);
+        seekTargetAt(x, y);
+    }
+
+    /**
+     * Steers towards the tracked cone (spinning to search while it isn't seen), and stops and
+     * moves to doneState once it is close. Uses the mTrackedCone fields, so call predictCone first.
+     */
+    private void approachCone(State doneState) {
+        if (!mTrackedConeFound) {
+            sendWheelSpeed(DEFAULT_SPEED  , DEFAULT_SPEED/8 );
         } else {
-            mBackgroundJumbo.setBackgroundColor(Color.GRAY);
+            if (mTrackedConeSize > 0.07) {
+                sendWheelSpeed(0, 0);
+                setState(doneState);
+            } else if (mTrackedConeLeftRightLocation > 0.25) {
+                sendWheelSpeed(DEFAULT_SPEED / 2, DEFAULT_SPEED / 4);
+            } else if (mTrackedConeLeftRightLocation < -0.25) {
+                sendWheelSpeed(DEFAULT_SPEED / 4, DEFAULT_SPEED / 2);
+            } else {
+                sendWheelSpeed(DEFAULT_SPEED / 2, DEFAULT_SPEED / 2);
+            }
         }
     }
 
-    private double getDistanceToGoal(long x, double y) {
-        return NavUtils.getDistance(x, y, mCurrentGpsX, mCurrentGpsY);
+    /**
+     * Distance from the guess position (the last GPS fix moved along by the wheel odometry).
+     */
+    private double getDistanceToGoal(double x, double y) {
+        return NavUtils.getDistance(x, y, mGuessX, mGuessY);
     }
 
+    /**
+     * Steers from the guess pose, so the turn keeps up between the 1 Hz GPS fixes. A fix with a
+     * heading resets the guess heading (see RobotActivity.onLocationChanged), so it isn't read here.
+     */
     private void seekTargetAt(double x, double y) {
 
 
         if (mDrivingTimer < AVERAGE_AMOUNT) {
-            if (mCurrentGpsHeading != NO_HEADING) {
-                mAverageHeading += mCurrentGpsHeading;
-            } else {
-                mAverageHeading += mCurrentSensorHeading;
-            }
+            mAverageHeading += mGuessHeading;
 
             mDrivingTimer++;
         } else {
             double leftTurnAmount;
             double rightTurnAmount;
             mAverageHeading = mAverageHeading / AVERAGE_AMOUNT;
-            leftTurnAmount = Math.round(NavUtils.getLeftTurnHeadingDelta(mAverageHeading, NavUtils.getTargetHeading(mCurrentGpsX, mCurrentGpsY, x, y)));
-            rightTurnAmount = Math.round(NavUtils.getRightTurnHeadingDelta(mAverageHeading, NavUtils.getTargetHeading(mCurrentGpsX, mCurrentGpsY, x, y)));
+            leftTurnAmount = Math.round(NavUtils.getLeftTurnHeadingDelta(mAverageHeading, NavUtils.getTargetHeading(mGuessX, mGuessY, x, y)));
+            rightTurnAmount = Math.round(NavUtils.getRightTurnHeadingDelta(mAverageHeading, NavUtils.getTargetHeading(mGuessX, mGuessY, x, y)));
 
             double leftSpeed;
             double rightSpeed;
-            if (NavUtils.targetIsOnLeft(mCurrentGpsX, mCurrentGpsY, mAverageHeading, x, y)) {
+            if (NavUtils.targetIsOnLeft(mGuessX, mGuessY, mAverageHeading, x, y)) {
                 if (leftTurnAmount < 30) {
                     leftSpeed = DEFAULT_SPEED;
                     rightSpeed = DEFAULT_SPEED;
@@ -464,16 +591,6 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
         }
     }
 
-    // --------------------------- Drive command ---------------------------
-
-    @Override
-    public void sendWheelSpeed(int leftDutyCycle, int rightDutyCycle) {
-        super.sendWheelSpeed(leftDutyCycle, rightDutyCycle); // Send the values to the
-        mLeftDutyCycleTextView.setText("Left\n" + leftDutyCycle);
-        mRightDutyCycleTextView.setText("Right\n" + rightDutyCycle);
-    }
-
-
     // --------------------------- Sensor listeners ---------------------------
 
     @Override
@@ -680,7 +797,13 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
             mGoOrMissionCompleteButton.setText("Mission Complete!");
             mGoOrMissionCompleteButtonJumbo.setBackgroundResource(R.drawable.red_button);
             mGoOrMissionCompleteButtonJumbo.setText("Stop!");
-            sendWheelSpeed(DEFAULT_SPEED, DEFAULT_SPEED);
+            runOnControlThread(new Runnable() {
+                @Override
+                public void run() {
+                    mLoopTimings.reset();
+                    sendWheelSpeed(DEFAULT_SPEED, DEFAULT_SPEED);
+                }
+            });
             mCommandHandler.postDelayed(new Runnable() {
                 @Override
                 public void run() {
@@ -689,7 +812,12 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
                 }
             }, 4000);
         } else {
-            setState(State.READY_FOR_MISSION);
+            runOnControlThread(new Runnable() {
+                @Override
+                public void run() {
+                    setState(State.READY_FOR_MISSION);
+                }
+            });
         }
     }
 
@@ -757,32 +885,65 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
         mCurrentSensorHeading = fieldHeading;
     }
 
+    /**
+     * How much vision each state needs. Driving on GPS and running arm scripts ignore the cone, so
+     * the camera frames are dropped there and the CPU goes to the control loop.
+     */
+    private int getVisionMode(State state) {
+        switch (state) {
+            case READY_FOR_MISSION: // Full rate while the target color is being tuned.
+            case NEAR_BALL_IMAGE_REC:
+            case FAR_BALL_IMAGE_REC:
+            case SEEKING_HOME:
+                return VisionScheduler.VISION_TRACK;
+            case WAITING_FOR_PICKUP: // About to seek home, keep an eye out for the cone.
+                return VisionScheduler.VISION_SEARCH;
+            default:
+                return VisionScheduler.VISION_OFF;
+        }
+    }
+
+    /**
+     * Runs the FSM transition. Call from the control thread (or before the control loop starts),
+     * the display changes are posted to the UI thread by showState.
+     */
     public void setState(State newState) {
         mFirebaseRef.child("state").setValue(newState);
         // Make sure when the match ends that no scheduled timer events from scripts change the FSM state.
         if (mState == State.READY_FOR_MISSION && newState != State.DRIVE_TOWARDS_NEAR_BALL && newState != State.NEAR_BALL_IMAGE_REC) {
-            Toast.makeText(this, "Illegal state transition out of READY_FOR_MISSION", Toast.LENGTH_SHORT).show();
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    Toast.makeText(GolfBallDeliveryActivity.this, "Illegal state transition out of READY_FOR_MISSION", Toast.LENGTH_SHORT).show();
+                }
+            });
             return;
         }
+        if (newState == State.READY_FOR_MISSION && mState != null && mState != State.READY_FOR_MISSION) {
+            // Match over, save the loop timings next to the stage timings.
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    dumpLoopTimings();
+                }
+            });
+        }
         mStateStartTime = System.currentTimeMillis();
-        mCurrentStateTextView.setText(newState.name());
-        speak(newState.name().replace("_", " ").toLowerCase());
+        mArrivalScheduled = false;
+        showState(newState);
+        // Only lock onto the cone while approaching it, everywhere else search the full frame.
+        mConeTrackingEnabled = newState == State.NEAR_BALL_IMAGE_REC || newState == State.FAR_BALL_IMAGE_REC
+                || newState == State.SEEKING_HOME;
+        setVisionMode(getVisionMode(newState));
+        mPendingSpeech = newState.name().replace("_", " ").toLowerCase();
         switch (newState) {
             case READY_FOR_MISSION:
-                mGoOrMissionCompleteButton.setBackgroundResource(R.drawable.green_button);
-                mGoOrMissionCompleteButton.setText("Go!");
-                mGoOrMissionCompleteButtonJumbo.setBackgroundResource(R.drawable.green_button);
-                mGoOrMissionCompleteButtonJumbo.setText("Go!");
-                mViewFlipper.setDisplayedChild(0);
                 sendWheelSpeed(0, 0);
                 sendCommand("ATTACH 111111");
                 break;
             case DRIVE_TOWARDS_NEAR_BALL:
                 sendCommand("ATTACH 111111");
                 sendCommand("POSITION "+ mScripts.HOME);
-                mGpsInfoTextView.setText("---"); // Clear GPS display (optional)
-                mGuessXYTextView.setText("---"); // Clear guess display (optional)
-                mViewFlipper.setDisplayedChild(2);
                 break;
             case NEAR_BALL_IMAGE_REC:
                 sendCommand("ATTACH 111111");
@@ -851,6 +1012,32 @@ public class GolfBallDeliveryActivity extends ImageRecActivity {
         mState = newState;
     }
 
+    /**
+     * The UI side of setState.
+     */
+    private void showState(final State newState) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mCurrentStateTextView.setText(newState.name());
+                switch (newState) {
+                    case READY_FOR_MISSION:
+                        mGoOrMissionCompleteButton.setBackgroundResource(R.drawable.green_button);
+                        mGoOrMissionCompleteButton.setText("Go!");
+                        mGoOrMissionCompleteButtonJumbo.setBackgroundResource(R.drawable.green_button);
+                        mGoOrMissionCompleteButtonJumbo.setText("Go!");
+                        mViewFlipper.setDisplayedChild(0);
+                        break;
+                    case DRIVE_TOWARDS_NEAR_BALL:
+                        mGpsInfoTextView.setText("---"); // Clear GPS display (optional)
+                        mGuessXYTextView.setText("---"); // Clear guess display (optional)
+                        mViewFlipper.setDisplayedChild(2);
+                        break;
+                }
+            }
+        });
+    }
+
     private void updateMissionStrategyVariables() {
         //Goal is to set these values
         mNearBallGpsY = 0;
@@ -21,6 +21,7 @@ import com.google.firebase.database.FirebaseDatabase;
 
 import org.opencv.android.BaseLoaderCallback;
 import org.opencv.android.CameraBridgeViewBase;
+import org.opencv.android.JavaCameraView;
 import org.opencv.android.LoaderCallbackInterface;
 import org.opencv.android.OpenCVLoader;
 import org.opencv.core.Core;
@@ -33,6 +34,8 @@ import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
 import org.opencv.imgproc.Moments;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 import edu.rosehulman.me435.RobotActivity;
@@ -48,6 +51,8 @@ public class ImageRecActivity extends RobotActivity implements CameraBridgeViewB
      * Constants and variables used by OpenCV4Android. Don't mess with these. ;)
      */
     private ColorBlobDetector mDetector;
+    private YuvBlobDetector mYuvDetector;
+    private VisionPipeline mVisionPipeline;
     private Scalar CONTOUR_COLOR = new Scalar(0, 0, 255, 255);
     private CameraBridgeViewBase mOpenCvCameraView;
     private BaseLoaderCallback mLoaderCallback = new BaseLoaderCallback(this) {
@@ -84,6 +89,42 @@ public class ImageRecActivity extends RobotActivity implements CameraBridgeViewB
      */
     private static final double MIN_SIZE_PERCENTAGE = 0.001;
 
+    /**
+     * Frames that wait longer than this for the vision thread are skipped rather than acted on.
+     */
+    private static final long MAX_VISION_FRAME_AGE_MS = 150;
+
+    /**
+     * Smallest camera frame the detectors need. Two pyrDown calls (or YUV sampling every 4th pixel)
+     * leave a 160x120 mask, so anything bigger is only copied and converted to be thrown away.
+     */
+    private static final int MIN_CAMERA_FRAME_WIDTH = 640;
+    private static final int MIN_CAMERA_FRAME_HEIGHT = 480;
+
+    /**
+     * Latest cone location from the vision thread, used to draw the overlay on the preview.
+     */
+    private volatile boolean mOverlayConeFound;
+    private volatile double mOverlayConeX, mOverlayConeY;
+
+    /**
+     * Per stage timing histograms for the camera and vision threads, off until enabled at runtime.
+     */
+    protected final StageTimings mStageTimings = new StageTimings();
+    private static final String STAGE_TIMINGS_FILE = "stage_timings.txt";
+
+    /**
+     * Glass to wheel trace of the latest vision result (control thread only). Only the first wheel
+     * command after each result is treated as the reaction to that frame.
+     */
+    private long mConeResultCaptureNs, mConeResultUiNs;
+    private boolean mConeResultAwaitingCommand = false;
+
+    /**
+     * Raw NV21 recorder for offline replay (see FrameReplayer), null when not recording.
+     */
+    private volatile FrameRecorder mFrameRecorder;
+
     /**
      * Screen size variables.
      */
@@ -101,6 +142,46 @@ public class ImageRecActivity extends RobotActivity implements CameraBridgeViewB
      */
     protected double mConeLeftRightLocation, mConeTopBottomLocation, mConeSize;
 
+    /**
+     * Kalman filtered cone, fed by every vision result on the control thread. Created once OpenCV
+     * has loaded.
+     */
+    protected volatile ConeTracker mConeTracker;
+
+    /**
+     * Filtered and predicted versions of the fields above as of the last call to predictCone. Stay
+     * valid while vision skips or drops frames, until the tracker loses confidence. Control thread
+     * only.
+     */
+    protected boolean mTrackedConeFound;
+    protected double mTrackedConeLeftRightLocation, mTrackedConeTopBottomLocation, mTrackedConeSize;
+    protected double mTrackedConeConfidence;
+
+    /**
+     * When true the detector only searches a window around the last cone it found (falling back
+     * to the full frame on a miss). Best when the cone is close and large.
+     */
+    protected volatile boolean mConeTrackingEnabled = false;
+
+    /**
+     * When true the cone is found straight from the camera's NV21 data (YuvBlobDetector) instead of
+     * converting every frame to RGBA and HSV first. Tracking and adaptive pyramid modes only apply
+     * to the RGBA detector.
+     */
+    protected volatile boolean mUseYuvDetector = false;
+
+    /**
+     * When true the RGBA detector classifies pixels with its RGB lookup table instead of cvtColor
+     * and inRange (see ColorBlobDetector.setLookupTableEnabled). Switched from the menu.
+     */
+    protected volatile boolean mLookupTableEnabled = false;
+
+    /**
+     * How many camera frames reach the detector (off, low rate search or every frame). Full rate
+     * until a subclass picks a mode with setVisionMode.
+     */
+    protected final VisionScheduler mVisionScheduler = new VisionScheduler();
+
 
     /**
      * References to the UI for image rec parameters for the target and range HSV values.
@@ -135,6 +216,9 @@ public class ImageRecActivity extends RobotActivity implements CameraBridgeViewB
 
         mOpenCvCameraView = findViewById(R.id.color_blob_detection_activity_surface_view);
         mOpenCvCameraView.setCvCameraViewListener(this);
+        // While the jumbotron (or main screen) is showing, keep detecting but skip drawing the preview.
+        mOpenCvCameraView.setRenderPolicy(CameraBridgeViewBase.RENDER_NEVER_WHILE_HIDDEN);
+        mOpenCvCameraView.setMinFrameSize(MIN_CAMERA_FRAME_WIDTH, MIN_CAMERA_FRAME_HEIGHT);
         if (PackageManager.PERMISSION_GRANTED == ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA)) {
             Log.d(TAG, "Everything should be fine with using the camera.");
         } else {
@@ -261,7 +345,124 @@ public class ImageRecActivity extends RobotActivity implements CameraBridgeViewB
 
 
     /**
-     * Displays the blob target info in the text views.
+     * Turns the per stage timing histograms on or off. Turning them on starts from empty histograms.
+     */
+    public void setStageTimingEnabled(boolean enabled) {
+        if (enabled && !mStageTimings.isEnabled()) {
+            mStageTimings.reset();
+        }
+        mStageTimings.setEnabled(enabled);
+    }
+
+    /**
+     * Logs the timing summary and writes the full histograms to the app's external files directory.
+     */
+    public void dumpStageTimings() {
+        Log.d(TAG, "Stage timings:\n" + mStageTimings.summary());
+        if (mOpenCvCameraView instanceof JavaCameraView) {
+            JavaCameraView cameraView = (JavaCameraView) mOpenCvCameraView;
+            Log.d(TAG, String.format("Camera frames: %d captured, %d delivered, %d dropped",
+                    cameraView.getCapturedFrameCount(), cameraView.getDeliveredFrameCount(),
+                    cameraView.getDroppedFrameCount()));
+        }
+        File file = new File(getExternalFilesDir(null), STAGE_TIMINGS_FILE);
+        try {
+            mStageTimings.dump(file);
+            Log.d(TAG, "Stage timings written to " + file.getAbsolutePath());
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write the stage timings", e);
+        }
+    }
+
+    /**
+     * Marks a new vision result as waiting for the wheel command that reacts to it.
+     */
+    private void traceConeResult(long captureTimeNs, long visionDoneNs) {
+        if (visionDoneNs == 0) {
+            mConeResultAwaitingCommand = false;
+            return;
+        }
+        mConeResultUiNs = mStageTimings.lap(StageTimings.LATENCY_UI, visionDoneNs);
+        mConeResultCaptureNs = captureTimeNs;
+        mConeResultAwaitingCommand = true;
+    }
+
+    /**
+     * While timing is on, tags the first wheel command after each vision result with that frame's
+     * capture time so the USB write can close the trace. Independent of the ROI tracking mode; the
+     * vision scheduler already drops the frames in states that ignore the cone. A repeat of the
+     * last command isn't written, so the trace waits for the next one that is.
+     */
+    @Override
+    public void sendWheelSpeed(int leftDutyCycle, int rightDutyCycle) {
+        if (mConeResultAwaitingCommand && mStageTimings.isEnabled()
+                && isWheelCommandDue(leftDutyCycle, rightDutyCycle)) {
+            mStageTimings.lap(StageTimings.LATENCY_LOOP, mConeResultUiNs);
+            mWheelCommandTraceNs = mConeResultCaptureNs;
+            mConeResultAwaitingCommand = false;
+        }
+        super.sendWheelSpeed(leftDutyCycle, rightDutyCycle);
+    }
+
+    @Override
+    protected void onCommandWritten(String command, long traceStartNs, long queuedNs, long writtenNs) {
+        super.onCommandWritten(command, traceStartNs, queuedNs, writtenNs);
+        if (mStageTimings.isEnabled()) {
+            mStageTimings.record(StageTimings.LATENCY_USB, writtenNs - queuedNs);
+            mStageTimings.record(StageTimings.GLASS_TO_WHEEL, writtenNs - traceStartNs);
+        }
+    }
+
+    /**
+     * Sets how much vision the robot needs right now (one of the VisionScheduler modes). Turning it
+     * off also clears the cone, since no more results will arrive to do so. Call from the control
+     * thread (or before the control loop starts).
+     */
+    protected void setVisionMode(int mode) {
+        if (mode == mVisionScheduler.getMode()) {
+            return;
+        }
+        mVisionScheduler.setMode(mode);
+        if (mode == VisionScheduler.VISION_OFF) {
+            mOverlayConeFound = false;
+            if (mConeTracker != null) {
+                mConeTracker.reset();
+            }
+            runOnUiThread(new Runnable() {
+                public void run() {
+                    onImageRecComplete(false, 0, 0, 0);
+                }
+            });
+        }
+    }
+
+    /**
+     * Brings the mTrackedCone fields up to date with the tracker's prediction for right now. Call
+     * from the control thread (like the FSM loop) before acting on them.
+     */
+    protected void predictCone() {
+        if (mConeTracker == null) {
+            mTrackedConeFound = false;
+            return;
+        }
+        mConeTracker.predict(System.nanoTime());
+        mTrackedConeFound = mConeTracker.isTracking();
+        mTrackedConeLeftRightLocation = mConeTracker.getLeftRightLocation();
+        mTrackedConeTopBottomLocation = mConeTracker.getTopBottomLocation();
+        mTrackedConeSize = mConeTracker.getSizePercentage();
+        mTrackedConeConfidence = mConeTracker.getConfidence();
+    }
+
+    /**
+     * Called on the control thread as soon as a new vision result has gone into the cone tracker,
+     * so a subclass can steer by it without waiting for the next loop. Call predictCone first to
+     * read it.
+     */
+    protected void onConeUpdate() {
+    }
+
+    /**
+     * Displays the blob target info in the text views. Called on the UI thread.
      */
     public void onImageRecComplete(boolean coneFound, double leftRightLocation, double topBottomLocation, double sizePercentage) {
         mConeFound = coneFound;
@@ -282,6 +483,12 @@ public class ImageRecActivity extends RobotActivity implements CameraBridgeViewB
     @Override
     public void onCameraViewStarted(int width, int height) {
         mDetector = new ColorBlobDetector();
+        mDetector.setAdaptivePyramidEnabled(true);
+        mDetector.setStageTimings(mStageTimings);
+        mYuvDetector = new YuvBlobDetector();
+        mYuvDetector.setStageTimings(mStageTimings);
+        mYuvDetector.setBlobLabelingEnabled(true);
+        mConeTracker = new ConeTracker();
         mRgba = new Mat(height, width, CvType.CV_8UC4);
         applyHsvTargetHsvRangeValues();
 
@@ -290,201 +497,209 @@ public class ImageRecActivity extends RobotActivity implements CameraBridgeViewB
         mCameraViewHeight = (double) height;
         mCameraViewArea = mCameraViewWidth * mCameraViewHeight;
 
+        mVisionPipeline = new VisionPipeline(new VisionPipeline.FrameProcessor() {
+            @Override
+            public void processFrame(Mat frame, long captureTimeNs, long publishTimeNs) {
+                processVisionFrame(frame, captureTimeNs, publishTimeNs);
+            }
+        }, MAX_VISION_FRAME_AGE_MS);
+        mVisionPipeline.start();
 
     }
 
     private void applyHsvTargetHsvRangeValues() {
         // Now DONE: Added our stuff.
-        // Setup the target color.
+        // Setup the target color.  Locked since the vision thread may be mid frame.
+        synchronized (mDetector) {
+            setDetectorHsvTargetAndRange();
+        }
+    }
+
+    private void setDetectorHsvTargetAndRange() {
         Scalar targetColorHsv = new Scalar(255);
         targetColorHsv.val[0] = mConeTargetH;
         targetColorHsv.val[1] = mConeTargetS;
         targetColorHsv.val[2] = mConeTargetV;
-        mDetector.setHsvColor(targetColorHsv);
 
         // Setup the range of values around the color to accept.
         Scalar colorRangeHsv = new Scalar(255);
         colorRangeHsv.val[0] = mConeRangeH;
         colorRangeHsv.val[1] = mConeRangeS;
         colorRangeHsv.val[2] = mConeRangeV;
-        mDetector.setColorRadius(colorRangeHsv);
+
+        // Both at once, so each detector rebuilds its tables at most once.
+        mDetector.setHsvColor(targetColorHsv, colorRangeHsv);
+        mYuvDetector.setHsvColor(targetColorHsv, colorRangeHsv);
     }
 
     @Override
     public void onCameraViewStopped() {
+        if (mVisionPipeline != null) {
+            mVisionPipeline.stop();
+        }
+        stopFrameRecording();
+    }
+
+    /**
+     * Starts appending every camera frame to a new file in the app's external files directory.
+     * Call again after stopFrameRecording to start a new file.
+     */
+    public void startFrameRecording() {
+        if (mFrameRecorder != null || mCameraViewWidth == 0) {
+            return;
+        }
+        File file = new File(getExternalFilesDir(null), "frames_" + System.currentTimeMillis() + ".nv21");
+        try {
+            mFrameRecorder = new FrameRecorder(file, (int) mCameraViewWidth, (int) mCameraViewHeight);
+            Log.d(TAG, "Recording camera frames to " + file.getAbsolutePath());
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to start recording camera frames", e);
+        }
+    }
 
+    public void stopFrameRecording() {
+        FrameRecorder recorder = mFrameRecorder;
+        if (recorder == null) {
+            return;
+        }
+        mFrameRecorder = null;
+        try {
+            recorder.close();
+            Log.d(TAG, "Recorded " + recorder.getFrameCount() + " camera frames");
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to finish the frame recording", e);
+        }
     }
 
     @Override
     public Mat onCameraFrame(CameraBridgeViewBase.CvCameraViewFrame inputFrame) {
-        mRgba = inputFrame.rgba();
-        mDetector.process(mRgba);
-        List<MatOfPoint> contours = mDetector.getContours(); // For the outline
-        Imgproc.drawContours(mRgba, contours, -1, CONTOUR_COLOR);
+        long captureTimeNs = inputFrame.captureTimeNs();
+        long timingStartNs = mStageTimings.start();
+        if (timingStartNs != 0) {
+            mStageTimings.record(StageTimings.LATENCY_CAMERA, timingStartNs - captureTimeNs);
+        }
+        FrameRecorder recorder = mFrameRecorder;
+        if (recorder != null) {
+            try {
+                recorder.record(inputFrame.yuv(), captureTimeNs);
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to record camera frame", e);
+                stopFrameRecording();
+            }
+        }
+        boolean rendering = mOpenCvCameraView.isRenderingFrame();
+        boolean processing = mVisionScheduler.acceptFrame(captureTimeNs);
+        if (!rendering && (mUseYuvDetector || !processing)) {
+            if (processing) {
+                mVisionPipeline.publish(inputFrame.yuv(), captureTimeNs);
+            }
+            // Nothing will be drawn, so skip the NV21 to RGBA conversion too.
+            mStageTimings.lap(StageTimings.CAMERA_FRAME, timingStartNs);
+            return null;
+        }
+        if (mUseYuvDetector) {
+            // Publish before rgba() so the vision thread never waits on the color conversion.
+            if (processing) {
+                mVisionPipeline.publish(inputFrame.yuv(), captureTimeNs);
+            }
+            mRgba = inputFrame.rgba();
+        } else {
+            mRgba = inputFrame.rgba();
+            if (processing) {
+                mVisionPipeline.publish(mRgba, captureTimeNs);
+            }
+        }
+        // The vision thread has its own copy, so just draw the latest result and return.
+        if (rendering && mOverlayConeFound) {
+            // Draw a circle on the screen at the center.
+            Imgproc.circle(mRgba, new Point(mOverlayConeX, mOverlayConeY), 5, CONTOUR_COLOR, -1);
+        }
+        mStageTimings.lap(StageTimings.CAMERA_FRAME, timingStartNs);
+        return mRgba;
+    }
 
+    /**
+     * Runs the detector on the vision thread and reports the result to the UI thread.
+     *
+     * @param frame         Either an RGBA frame or a single channel NV21 frame (when using the YUV detector).
+     * @param captureTimeNs When the camera delivered the frame, carried through for latency tracing.
+     * @param publishTimeNs When onCameraFrame handed the frame to the vision pipeline.
+     */
+    private void processVisionFrame(Mat frame, final long captureTimeNs, long publishTimeNs) {
+        final long visionStartNs = mStageTimings.lap(StageTimings.LATENCY_QUEUE, publishTimeNs);
         // Now DONE: Add our stuff.
         // Find the center of the cone.
         double[] coneResult = new double[3];
-        final boolean coneFound = findCone(contours, MIN_SIZE_PERCENTAGE, coneResult);
+        final boolean coneFound;
+        synchronized (mDetector) {
+            if (frame.channels() == 1) {
+                mYuvDetector.process(frame, (int) mCameraViewWidth, (int) mCameraViewHeight);
+                long t = mStageTimings.start();
+                coneFound = ConeLocator.findConeInBlobs(mYuvDetector.getBlobs(), MIN_SIZE_PERCENTAGE,
+                        mCameraViewWidth, mCameraViewHeight, coneResult);
+                mStageTimings.lap(StageTimings.FIND_CONE, t);
+            } else {
+                mDetector.setTrackingEnabled(mConeTrackingEnabled);
+                mDetector.setLookupTableEnabled(mLookupTableEnabled);
+                mDetector.setAdaptivePyramidEnabled(mVisionScheduler.isAdaptiveResolution());
+                mDetector.process(frame);
+                long t = mStageTimings.start();
+                coneFound = findCone(mDetector.getContourStats(), MIN_SIZE_PERCENTAGE, coneResult);
+                mStageTimings.lap(StageTimings.FIND_CONE, t);
+            }
+        }
         final double leftRightLocation = coneResult[0]; // -1 for left ...  1 for right
         final double topBottomLocation = coneResult[1]; // 1 for top ... 0 for bottom
         final double sizePercentage = coneResult[2];
         if (coneFound) {
-            // Draw a circle on the screen at the center.
-            double coneCenterX = topBottomLocation * mCameraViewWidth;
-            double coneCenterY = (leftRightLocation + 1.0) / 2.0 * mCameraViewHeight;
-            Imgproc.circle(mRgba, new Point(coneCenterX, coneCenterY), 5, CONTOUR_COLOR, -1);
+            mOverlayConeX = topBottomLocation * mCameraViewWidth;
+            mOverlayConeY = (leftRightLocation + 1.0) / 2.0 * mCameraViewHeight;
         }
+        mOverlayConeFound = coneFound;
+        final long visionDoneNs = mStageTimings.lap(StageTimings.LATENCY_VISION, visionStartNs);
+        // The tracker goes straight to the control thread, the text views wait for the UI thread.
+        runOnControlThread(new Runnable() {
+            public void run() {
+                ConeTracker tracker = mConeTracker;
+                if (tracker != null) {
+                    tracker.update(coneFound, leftRightLocation, topBottomLocation, sizePercentage, captureTimeNs);
+                }
+                traceConeResult(captureTimeNs, visionDoneNs);
+                onConeUpdate();
+            }
+        });
         runOnUiThread(new Runnable() {
             public void run() {
                 onImageRecComplete(coneFound, leftRightLocation, topBottomLocation, sizePercentage);
             }
         });
-
-
-        return mRgba;
     }
 
     /**
      * Performs the math to find the leftRightLocation, topBottomLocation, and sizePercentage values.
      *
-     * @param contours          List of matrices containing points that match the target color.
+     * @param contourStats      Stats for each blob that matches the target color (from the detector).
      * @param minSizePercentage Minimum size percentage needed to call a blob a match. 0.005 would be 0.5%
      * @param coneResult        Array that will be populated with the results of this math.
      * @return True if a cone is found, False if no cone is found.
      */
-    private boolean findCone(List<MatOfPoint> contours, double minSizePercentage, double[] coneResult) {
-        // Step #0: Determine if any contour regions were found that match the target color criteria.
-        if (contours.size() == 0) {
-            return false; // No contours found.
-        }
-
-        // Step #1: Use only the largest contour. Other contours (potential other cones) will be ignored.
-        MatOfPoint largestContour = contours.get(0);
-        double largestArea = Imgproc.contourArea(largestContour);
-        for (int i = 1; i < contours.size(); ++i) {
-            MatOfPoint currentContour = contours.get(0);
-            double currentArea = Imgproc.contourArea(currentContour);
-            if (currentArea > largestArea) {
-                largestArea = currentArea;
-                largestContour = currentContour;
-            }
-        }
-
-        // Step #2: Determine if this target meets the size requirement.
-        double sizePercentage = largestArea / mCameraViewArea;
-        if (sizePercentage < minSizePercentage) {
-            return false; // No cone found meeting the size requirement.
-        }
-
-        // Step #3: Calculate the center of the blob.
-//        Moments moments = Imgproc.moments(largestContour, false);
-        // yep, the line above fails.  Comment out the line above and uncomment the line below.  For more info visit this page https://github.com/Itseez/opencv/issues/5017
-        Moments moments = contourMoments(largestContour);
-        double aveX = moments.get_m10() / moments.get_m00();
-        double aveY = moments.get_m01() / moments.get_m00();
-
-        // Step #4: Convert the X and Y values into leftRight and topBottom values.
-        // X is 0 on the left (which is really the bottom) divide by width to scale the topBottomLocation
-        // Y is 0 on the top of the view (object is left of the robot) divide by height to scale
-        double leftRightLocation = aveY / (mCameraViewHeight / 2.0) - 1.0;
-        double topBottomLocation = aveX / mCameraViewWidth;
-
-        // Step #5: Populate the results array.
-        coneResult[0] = leftRightLocation;
-        coneResult[1] = topBottomLocation;
-        coneResult[2] = sizePercentage;
-        return true;
+    private boolean findCone(List<ContourStats> contourStats, double minSizePercentage, double[] coneResult) {
+        return ConeLocator.findCone(contourStats, minSizePercentage, mCameraViewWidth, mCameraViewHeight, coneResult);
     }
 
+    /**
+     * Scratch space used by contourMoments to read the contour points.
+     */
+    private int[] mMomentsPointBuffer;
+
+    /**
+     * Java replacement for Imgproc.moments on a contour. Reads the points into a reusable int array
+     * instead of a Point[] so no objects are created per vertex.
+     */
     public Moments contourMoments(MatOfPoint contour) {
         Moments m = new Moments();
-        int lpt = contour.checkVector(2);
-        boolean is_float = true;//(contour.depth() == CvType.CV_32F);
-        Point[] ptsi = contour.toArray();
-//PointF[] ptsf = contour.toArray();
-
-        //CV_Assert( contour.depth() == CV_32S || contour.depth() == CV_32F );
-
-        if (lpt == 0)
-            return m;
-
-        double a00 = 0, a10 = 0, a01 = 0, a20 = 0, a11 = 0, a02 = 0, a30 = 0, a21 = 0, a12 = 0, a03 = 0;
-        double xi, yi, xi2, yi2, xi_1, yi_1, xi_12, yi_12, dxy, xii_1, yii_1;
-
-
-        {
-            xi_1 = ptsi[lpt - 1].x;
-            yi_1 = ptsi[lpt - 1].y;
-        }
-
-        xi_12 = xi_1 * xi_1;
-        yi_12 = yi_1 * yi_1;
-
-        for (int i = 0; i < lpt; i++) {
-
-            {
-                xi = ptsi[i].x;
-                yi = ptsi[i].y;
-            }
-
-            xi2 = xi * xi;
-            yi2 = yi * yi;
-            dxy = xi_1 * yi - xi * yi_1;
-            xii_1 = xi_1 + xi;
-            yii_1 = yi_1 + yi;
-
-            a00 += dxy;
-            a10 += dxy * xii_1;
-            a01 += dxy * yii_1;
-            a20 += dxy * (xi_1 * xii_1 + xi2);
-            a11 += dxy * (xi_1 * (yii_1 + yi_1) + xi * (yii_1 + yi));
-            a02 += dxy * (yi_1 * yii_1 + yi2);
-            a30 += dxy * xii_1 * (xi_12 + xi2);
-            a03 += dxy * yii_1 * (yi_12 + yi2);
-            a21 += dxy * (xi_12 * (3 * yi_1 + yi) + 2 * xi * xi_1 * yii_1 +
-                    xi2 * (yi_1 + 3 * yi));
-            a12 += dxy * (yi_12 * (3 * xi_1 + xi) + 2 * yi * yi_1 * xii_1 +
-                    yi2 * (xi_1 + 3 * xi));
-            xi_1 = xi;
-            yi_1 = yi;
-            xi_12 = xi2;
-            yi_12 = yi2;
-        }
-        float FLT_EPSILON = 1.19209e-07f;
-        if (Math.abs(a00) > FLT_EPSILON) {
-            double db1_2, db1_6, db1_12, db1_24, db1_20, db1_60;
-
-            if (a00 > 0) {
-                db1_2 = 0.5;
-                db1_6 = 0.16666666666666666666666666666667;
-                db1_12 = 0.083333333333333333333333333333333;
-                db1_24 = 0.041666666666666666666666666666667;
-                db1_20 = 0.05;
-                db1_60 = 0.016666666666666666666666666666667;
-            } else {
-                db1_2 = -0.5;
-                db1_6 = -0.16666666666666666666666666666667;
-                db1_12 = -0.083333333333333333333333333333333;
-                db1_24 = -0.041666666666666666666666666666667;
-                db1_20 = -0.05;
-                db1_60 = -0.016666666666666666666666666666667;
-            }
-
-            // spatial moments
-            m.m00 = a00 * db1_2;
-            m.m10 = a10 * db1_6;
-            m.m01 = a01 * db1_6;
-            m.m20 = a20 * db1_12;
-            m.m11 = a11 * db1_24;
-            m.m02 = a02 * db1_12;
-            m.m30 = a30 * db1_20;
-            m.m21 = a21 * db1_60;
-            m.m12 = a12 * db1_60;
-            m.m03 = a03 * db1_20;
-
-            m.completeState();
-        }
+        mMomentsPointBuffer = ContourStats.readPoints(contour, mMomentsPointBuffer);
+        ContourStats.computeMoments(mMomentsPointBuffer, (int) contour.total(), m, null);
         return m;
     }
 
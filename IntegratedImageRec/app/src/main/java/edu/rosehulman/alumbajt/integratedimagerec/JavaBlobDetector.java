@@ -0,0 +1,417 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.opencv.core.Scalar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * ColorBlobDetector contract implemented in plain Java on pixel arrays, so it runs (and can be
+ * tested) without the native OpenCV libraries or the OpenCV Manager. The same steps are used: two
+ * pyrDown levels, RGB to full range HSV, range check, 3x3 dilate and 8-connected blobs (from
+ * BlobLabeler) filtered by minContourArea times the largest blob. Every per pixel stage splits its
+ * rows into bands that run in parallel on a thread pool.
+ *
+ * Blobs are measured from their pixels rather than from a traced contour polygon, so compared to
+ * ColorBlobDetector the centroids agree to within a mask pixel (4 image pixels) and areas are a
+ * little larger (by about half the blob perimeter, and holes are not filled in).
+ *
+ * Results are recycled, so they are only valid until the next call to process.
+ */
+public class JavaBlobDetector {
+    // Number of pyrDown levels, same as ColorBlobDetector's default.
+    private static final int PYRAMID_LEVELS = 2;
+    private static final int SCALE = 1 << PYRAMID_LEVELS;
+    // Bands smaller than this are not worth handing to another thread.
+    private static final int MIN_BAND_ROWS = 16;
+
+    // Lower and Upper bounds for range checking in HSV color space
+    private final double[] mLowerBound = new double[3];
+    private final double[] mUpperBound = new double[3];
+    // Minimum contour area in percent for contours filtering
+    private double mMinContourArea = 0.1;
+    // Color radius for range checking in HSV color space
+    private Scalar mColorRadius = new Scalar(25, 50, 50, 0);
+    private Scalar mHsvColor;
+
+    private final ExecutorService mExecutor;
+    private final boolean mOwnsExecutor;
+    private final int mParallelism;
+
+    // Planar color channels for each pyramid level (index 0 is the input).
+    private final byte[][][] mPlanes = new byte[PYRAMID_LEVELS + 1][3][];
+    private final int[] mLevelWidth = new int[PYRAMID_LEVELS + 1];
+    private final int[] mLevelHeight = new int[PYRAMID_LEVELS + 1];
+    // Horizontal pyrDown pass, one row per source row.
+    private int[][] mRowSums = new int[3][0];
+    private byte[] mMask = new byte[0];
+    private byte[] mDilatedMask = new byte[0];
+    private final BlobLabeler mLabeler = new BlobLabeler();
+
+    /**
+     * Uses a private pool with one thread per core.
+     */
+    public JavaBlobDetector() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public JavaBlobDetector(int threads) {
+        mParallelism = Math.max(1, threads);
+        mExecutor = mParallelism == 1 ? null : Executors.newFixedThreadPool(mParallelism, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "JavaBlobDetector");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mOwnsExecutor = true;
+    }
+
+    /**
+     * Shares an existing pool.
+     *
+     * @param parallelism Number of row bands to split each stage into.
+     */
+    public JavaBlobDetector(ExecutorService executor, int parallelism) {
+        mExecutor = executor;
+        mOwnsExecutor = false;
+        mParallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Stops the private thread pool (shared pools are left alone).
+     */
+    public void shutdown() {
+        if (mOwnsExecutor && mExecutor != null) {
+            mExecutor.shutdown();
+        }
+    }
+
+    public void setColorRadius(Scalar radius) {
+        mColorRadius = radius;
+        if (mHsvColor != null) {
+            setHsvColor(mHsvColor);
+        }
+    }
+
+    /**
+     * Same bounds as ColorBlobDetector.setHsvColor (full range hue, 0 to 255).
+     */
+    public void setHsvColor(Scalar hsvColor) {
+        mHsvColor = hsvColor;
+        mLowerBound[0] = (hsvColor.val[0] >= mColorRadius.val[0]) ? hsvColor.val[0] - mColorRadius.val[0] : 0;
+        mUpperBound[0] = (hsvColor.val[0] + mColorRadius.val[0] <= 255) ? hsvColor.val[0] + mColorRadius.val[0] : 255;
+
+        mLowerBound[1] = hsvColor.val[1] - mColorRadius.val[1];
+        mUpperBound[1] = hsvColor.val[1] + mColorRadius.val[1];
+
+        mLowerBound[2] = hsvColor.val[2] - mColorRadius.val[2];
+        mUpperBound[2] = hsvColor.val[2] + mColorRadius.val[2];
+    }
+
+    public void setMinContourArea(double area) {
+        mMinContourArea = area;
+    }
+
+    /**
+     * @param rgba Interleaved R, G, B, A bytes (like an RGBA Mat's data).
+     * @return False if the calling thread was interrupted part way through the frame. The frame is
+     * then dropped and getBlobs is left empty, the interrupt flag stays set.
+     */
+    public boolean process(final byte[] rgba, final int width, int height) {
+        setInputSize(width, height);
+        boolean copied = runBands(height, new BandTask() {
+            @Override
+            public void run(int startRow, int endRow) {
+                byte[] r = mPlanes[0][0], g = mPlanes[0][1], b = mPlanes[0][2];
+                for (int i = startRow * width, p = i * 4, end = endRow * width; i < end; i++, p += 4) {
+                    r[i] = rgba[p];
+                    g[i] = rgba[p + 1];
+                    b[i] = rgba[p + 2];
+                }
+            }
+        });
+        return processPlanes(copied);
+    }
+
+    /**
+     * @param argb Packed ARGB ints (like Bitmap.getPixels).
+     * @return False if interrupted, see process(byte[], int, int).
+     */
+    public boolean process(final int[] argb, final int width, int height) {
+        setInputSize(width, height);
+        boolean copied = runBands(height, new BandTask() {
+            @Override
+            public void run(int startRow, int endRow) {
+                byte[] r = mPlanes[0][0], g = mPlanes[0][1], b = mPlanes[0][2];
+                for (int i = startRow * width, end = endRow * width; i < end; i++) {
+                    int pixel = argb[i];
+                    r[i] = (byte) (pixel >> 16);
+                    g[i] = (byte) (pixel >> 8);
+                    b[i] = (byte) pixel;
+                }
+            }
+        });
+        return processPlanes(copied);
+    }
+
+    /**
+     * Blobs found by the last call to process, in full size image coordinates.
+     */
+    public List<Blob> getBlobs() {
+        return mLabeler.getBlobs();
+    }
+
+    private void setInputSize(int width, int height) {
+        for (int level = 0; level <= PYRAMID_LEVELS; level++) {
+            if (mLevelWidth[level] != width || mLevelHeight[level] != height || mPlanes[level][0] == null) {
+                mLevelWidth[level] = width;
+                mLevelHeight[level] = height;
+                for (int c = 0; c < 3; c++) {
+                    mPlanes[level][c] = new byte[width * height];
+                }
+            }
+            width = (width + 1) / 2;
+            height = (height + 1) / 2;
+        }
+    }
+
+    /**
+     * Runs the remaining stages, stopping at the first one that was interrupted.
+     *
+     * @param inputReady False if copying the input was already interrupted.
+     * @return True if the blobs were labeled from a complete mask.
+     */
+    private boolean processPlanes(boolean inputReady) {
+        boolean complete = inputReady;
+        for (int level = 1; complete && level <= PYRAMID_LEVELS; level++) {
+            complete = pyrDown(level);
+        }
+        int width = mLevelWidth[PYRAMID_LEVELS];
+        int height = mLevelHeight[PYRAMID_LEVELS];
+        if (mMask.length != width * height) {
+            mMask = new byte[width * height];
+            mDilatedMask = new byte[width * height];
+        }
+        complete = complete && threshold(width, height) && dilate(width, height);
+        if (!complete) {
+            mLabeler.clear();
+            return false;
+        }
+        mLabeler.label(mDilatedMask, width, height, SCALE, mMinContourArea);
+        return true;
+    }
+
+    /**
+     * Same as Imgproc.pyrDown on 8 bit data: 5x5 [1 4 6 4 1] Gaussian, reflect 101 border, every
+     * other pixel kept, rounded result.
+     */
+    private boolean pyrDown(final int level) {
+        final int srcWidth = mLevelWidth[level - 1];
+        final int srcHeight = mLevelHeight[level - 1];
+        final int dstWidth = mLevelWidth[level];
+        final int dstHeight = mLevelHeight[level];
+        if (mRowSums[0].length < srcHeight * dstWidth) {
+            for (int c = 0; c < 3; c++) {
+                mRowSums[c] = new int[srcHeight * dstWidth];
+            }
+        }
+        // Horizontal pass over every source row.
+        boolean complete = runBands(srcHeight, new BandTask() {
+            @Override
+            public void run(int startRow, int endRow) {
+                for (int c = 0; c < 3; c++) {
+                    byte[] src = mPlanes[level - 1][c];
+                    int[] sums = mRowSums[c];
+                    for (int y = startRow; y < endRow; y++) {
+                        int row = y * srcWidth;
+                        int out = y * dstWidth;
+                        for (int x = 0; x < dstWidth; x++) {
+                            int sx = 2 * x;
+                            sums[out + x] = (src[row + reflect(sx - 2, srcWidth)] & 0xFF)
+                                    + 4 * (src[row + reflect(sx - 1, srcWidth)] & 0xFF)
+                                    + 6 * (src[row + reflect(sx, srcWidth)] & 0xFF)
+                                    + 4 * (src[row + reflect(sx + 1, srcWidth)] & 0xFF)
+                                    + (src[row + reflect(sx + 2, srcWidth)] & 0xFF);
+                        }
+                    }
+                }
+            }
+        });
+        if (!complete) {
+            return false;
+        }
+        // Vertical pass for every other row.
+        return runBands(dstHeight, new BandTask() {
+            @Override
+            public void run(int startRow, int endRow) {
+                for (int c = 0; c < 3; c++) {
+                    int[] sums = mRowSums[c];
+                    byte[] dst = mPlanes[level][c];
+                    for (int y = startRow; y < endRow; y++) {
+                        int sy = 2 * y;
+                        int r0 = reflect(sy - 2, srcHeight) * dstWidth;
+                        int r1 = reflect(sy - 1, srcHeight) * dstWidth;
+                        int r2 = reflect(sy, srcHeight) * dstWidth;
+                        int r3 = reflect(sy + 1, srcHeight) * dstWidth;
+                        int r4 = reflect(sy + 2, srcHeight) * dstWidth;
+                        int out = y * dstWidth;
+                        for (int x = 0; x < dstWidth; x++) {
+                            int sum = sums[r0 + x] + 4 * sums[r1 + x] + 6 * sums[r2 + x]
+                                    + 4 * sums[r3 + x] + sums[r4 + x];
+                            dst[out + x] = (byte) ((sum + 128) >> 8);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * BORDER_REFLECT_101 (gfedcb|abcdefgh|gfedcba).
+     */
+    private static int reflect(int i, int size) {
+        if (size == 1) {
+            return 0;
+        }
+        while (i < 0 || i >= size) {
+            i = i < 0 ? -i : 2 * size - i - 2;
+        }
+        return i;
+    }
+
+    private boolean threshold(final int width, int height) {
+        return runBands(height, new BandTask() {
+            @Override
+            public void run(int startRow, int endRow) {
+                byte[] r = mPlanes[PYRAMID_LEVELS][0], g = mPlanes[PYRAMID_LEVELS][1], b = mPlanes[PYRAMID_LEVELS][2];
+                int[] hsv = new int[3];
+                for (int i = startRow * width, end = endRow * width; i < end; i++) {
+                    ColorLookupTable.rgbToHsvFull(r[i] & 0xFF, g[i] & 0xFF, b[i] & 0xFF, hsv);
+                    boolean inside = hsv[0] >= mLowerBound[0] && hsv[0] <= mUpperBound[0]
+                            && hsv[1] >= mLowerBound[1] && hsv[1] <= mUpperBound[1]
+                            && hsv[2] >= mLowerBound[2] && hsv[2] <= mUpperBound[2];
+                    mMask[i] = inside ? (byte) 255 : 0;
+                }
+            }
+        });
+    }
+
+    private boolean dilate(final int width, final int height) {
+        return runBands(height, new BandTask() {
+            @Override
+            public void run(int startRow, int endRow) {
+                BlobLabeler.dilate(mMask, mDilatedMask, width, height, startRow, endRow);
+            }
+        });
+    }
+
+    private interface BandTask {
+        void run(int startRow, int endRow);
+    }
+
+    /**
+     * Keeps count of the bands of one runBands call that are running, so an interrupted call can
+     * wait for them before the next frame reuses the buffers they write into.
+     */
+    private static final class BandBatch {
+        private int mRunning = 0;
+        private boolean mAbandoned = false;
+
+        /**
+         * @return False if the batch was abandoned and the band should not run.
+         */
+        synchronized boolean begin() {
+            if (mAbandoned) {
+                return false;
+            }
+            mRunning++;
+            return true;
+        }
+
+        synchronized void end() {
+            if (--mRunning == 0) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Stops bands that have not started yet and waits for the running ones, ignoring (but
+         * keeping) interrupts.
+         */
+        synchronized void abandon() {
+            mAbandoned = true;
+            boolean interrupted = false;
+            while (mRunning > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Splits rows 0 to rows into bands and runs them on the pool, returning when all are done.
+     *
+     * @return False if the calling thread was interrupted while waiting, in which case some bands
+     * may not have run (the interrupt flag is set again for the caller). Bands that had already
+     * started are always finished before this returns.
+     */
+    private boolean runBands(int rows, final BandTask task) {
+        int bands = Math.min(mParallelism, Math.max(1, rows / MIN_BAND_ROWS));
+        if (mExecutor == null || bands == 1) {
+            task.run(0, rows);
+            return true;
+        }
+        final BandBatch batch = new BandBatch();
+        List<Future<?>> futures = new ArrayList<Future<?>>(bands);
+        for (int band = 0; band < bands; band++) {
+            final int startRow = rows * band / bands;
+            final int endRow = rows * (band + 1) / bands;
+            futures.add(mExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (!batch.begin()) {
+                        return;
+                    }
+                    try {
+                        task.run(startRow, endRow);
+                    } finally {
+                        batch.end();
+                    }
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            stopBands(batch, futures);
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            stopBands(batch, futures);
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static void stopBands(BandBatch batch, List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(false);
+        }
+        batch.abandon();
+    }
+}
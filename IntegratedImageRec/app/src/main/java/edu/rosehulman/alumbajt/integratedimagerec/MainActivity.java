@@ -1,5 +1,6 @@
 package edu.rosehulman.alumbajt.integratedimagerec;
 
+import android.app.AlertDialog;
 import android.os.Bundle;
 import android.support.v7.widget.Toolbar;
 import android.view.Menu;
@@ -31,6 +32,35 @@ public class MainActivity extends GolfBallDeliveryActivity {
             mViewFlipper.showNext();
             return true;
         }
+        if (item.getItemId() == R.id.action_stage_timing) {
+            item.setChecked(!item.isChecked());
+            setStageTimingEnabled(item.isChecked());
+            return true;
+        }
+        if (item.getItemId() == R.id.action_lookup_table) {
+            item.setChecked(!item.isChecked());
+            mLookupTableEnabled = item.isChecked();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_dump_stage_timings) {
+            dumpStageTimings();
+            dumpLoopTimings();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_loop_timings) {
+            new AlertDialog.Builder(this).setTitle("Loop timings")
+                    .setMessage(mLoopTimings.summary()).setPositiveButton("OK", null).show();
+            return true;
+        }
+        if (item.getItemId() == R.id.action_record_frames) {
+            item.setChecked(!item.isChecked());
+            if (item.isChecked()) {
+                startFrameRecording();
+            } else {
+                stopFrameRecording();
+            }
+            return true;
+        }
 
         return super.onOptionsItemSelected(item);
     }
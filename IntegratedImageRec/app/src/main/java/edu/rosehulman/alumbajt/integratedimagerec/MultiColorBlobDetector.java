@@ -0,0 +1,132 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.List;
+
+/**
+ * Finds blobs for several HSV targets at once (for example every BallColor). The frame is only
+ * pyrDowned and converted to HSV once. Every pixel then gets a word with one bit per target it
+ * matches, from three table lookups however many targets there are. The words are dilated with a
+ * 3x3 OR, which dilates every target's mask at once, and BlobLabeler.labelBits labels all of the
+ * targets in a single pass over the runs. Background pixels cost the same for any number of
+ * targets, and a target only adds work for the runs of pixels that match it.
+ *
+ * Not used by the activities yet: the golf ball colors come from the Arduino's color sensors, and
+ * the camera only looks for the cone.
+ *
+ * Targets use the same HSV bounds as ColorBlobDetector.setHsvColor. At most 32 targets are
+ * supported (one bit each). Results are Blobs (pixel area, centroid and moments) rather than
+ * contours.
+ */
+public class MultiColorBlobDetector {
+    public static final int MAX_TARGETS = BlobLabeler.MAX_TARGETS;
+
+    // Each mask pixel covers 4x4 image pixels (two pyrDown levels).
+    private static final int SCALE = 4;
+
+    // Minimum blob area, as a fraction of the same target's largest blob
+    private double mMinContourArea = 0.1;
+
+    // Bit k of entry i is set when channel value i is inside target k's range.
+    private final int[] mHueBits = new int[256];
+    private final int[] mSatBits = new int[256];
+    private final int[] mValBits = new int[256];
+
+    private int mTargetCount;
+    private final BlobLabeler mLabeler = new BlobLabeler();
+
+    // Cache
+    private final Mat mPyrDownMat = new Mat();
+    private final Mat mHsvMat = new Mat();
+    private byte[] mHsvBuffer = new byte[0];
+    // Target bits of each mask pixel, before and after the dilate.
+    private int[] mBits = new int[0];
+    private int[] mDilatedBits = new int[0];
+
+    /**
+     * Adds a color target.
+     *
+     * @param hsvColor    Target color (full range hue, 0 to 255).
+     * @param colorRadius Accepted distance from the target in each HSV channel.
+     * @return The index used with getBlobs for this target.
+     */
+    public int addTarget(Scalar hsvColor, Scalar colorRadius) {
+        int index = mTargetCount;
+        if (index >= MAX_TARGETS) {
+            throw new IllegalStateException("At most " + MAX_TARGETS + " color targets are supported");
+        }
+        mTargetCount++;
+        setTarget(index, hsvColor, colorRadius);
+        return index;
+    }
+
+    /**
+     * Changes the color range of an existing target, for example after tuning in the field.
+     */
+    public void setTarget(int index, Scalar hsvColor, Scalar colorRadius) {
+        double minH = (hsvColor.val[0] >= colorRadius.val[0]) ? hsvColor.val[0] - colorRadius.val[0] : 0;
+        double maxH = (hsvColor.val[0] + colorRadius.val[0] <= 255) ? hsvColor.val[0] + colorRadius.val[0] : 255;
+        setChannelBits(mHueBits, index, minH, maxH);
+        setChannelBits(mSatBits, index, hsvColor.val[1] - colorRadius.val[1], hsvColor.val[1] + colorRadius.val[1]);
+        setChannelBits(mValBits, index, hsvColor.val[2] - colorRadius.val[2], hsvColor.val[2] + colorRadius.val[2]);
+    }
+
+    private static void setChannelBits(int[] table, int index, double lower, double upper) {
+        int bit = 1 << index;
+        for (int value = 0; value < table.length; value++) {
+            if (value >= lower && value <= upper) {
+                table[value] |= bit;
+            } else {
+                table[value] &= ~bit;
+            }
+        }
+    }
+
+    public int getTargetCount() {
+        return mTargetCount;
+    }
+
+    public void setMinContourArea(double area) {
+        mMinContourArea = area;
+    }
+
+    public void process(Mat rgbaImage) {
+        Imgproc.pyrDown(rgbaImage, mPyrDownMat);
+        Imgproc.pyrDown(mPyrDownMat, mPyrDownMat);
+
+        Imgproc.cvtColor(mPyrDownMat, mHsvMat, Imgproc.COLOR_RGB2HSV_FULL);
+
+        int rows = mHsvMat.rows();
+        int cols = mHsvMat.cols();
+        int pixels = rows * cols;
+        if (mBits.length != pixels) {
+            mHsvBuffer = new byte[pixels * 3];
+            mBits = new int[pixels];
+            mDilatedBits = new int[pixels];
+        }
+        mHsvMat.get(0, 0, mHsvBuffer);
+
+        // Single sweep: every pixel is checked against every target with three table lookups.
+        int[] hueBits = mHueBits;
+        int[] satBits = mSatBits;
+        int[] valBits = mValBits;
+        byte[] hsv = mHsvBuffer;
+        int[] bits = mBits;
+        for (int i = 0, p = 0; i < pixels; i++, p += 3) {
+            bits[i] = hueBits[hsv[p] & 0xFF] & satBits[hsv[p + 1] & 0xFF] & valBits[hsv[p + 2] & 0xFF];
+        }
+
+        BlobLabeler.dilateBits(bits, mDilatedBits, cols, rows);
+        mLabeler.labelBits(mDilatedBits, cols, rows, mTargetCount, SCALE, mMinContourArea);
+    }
+
+    /**
+     * Blobs found for one target by the last call to process (recycled, valid until the next call).
+     */
+    public List<Blob> getBlobs(int targetIndex) {
+        return mLabeler.getBlobs(targetIndex);
+    }
+}
@@ -9,7 +9,8 @@ import edu.rosehulman.me435.RobotActivity;
 
 public class Scripts {
 
-    private Handler mCommandHandler = new Handler();
+    /** Control thread handler, so the delayed wheel commands go out in order with the loop's. */
+    private Handler mCommandHandler;
 
     private GolfBallDeliveryActivity mActivity;
 
@@ -17,6 +18,7 @@ public class Scripts {
 
     public Scripts(GolfBallDeliveryActivity activity) {
         mActivity = activity;
+        mCommandHandler = activity.getCommandHandler();
     }
 
     protected String HOME = "0 90 0 -90 90";
@@ -32,12 +34,22 @@ public class Scripts {
         Toast.makeText(mActivity, "Begin Short straight drive test at " +
                         mActivity.mLeftStraightPwmValue + "  " + mActivity.mRightStraightPwmValue,
                 Toast.LENGTH_SHORT).show();
-        mActivity.sendWheelSpeed(mActivity.mLeftStraightPwmValue, mActivity.mRightStraightPwmValue);
+        mActivity.runOnControlThread(new Runnable() {
+            @Override
+            public void run() {
+                mActivity.sendWheelSpeed(mActivity.mLeftStraightPwmValue, mActivity.mRightStraightPwmValue);
+            }
+        });
         mCommandHandler.postDelayed(new Runnable() {
             @Override
             public void run() {
-                Toast.makeText(mActivity, "End Short straight drive test", Toast.LENGTH_SHORT).show();
                 mActivity.sendWheelSpeed(0, 0);
+                mActivity.runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(mActivity, "End Short straight drive test", Toast.LENGTH_SHORT).show();
+                    }
+                });
             }
         }, 8000);
     }
@@ -114,7 +126,7 @@ public class Scripts {
                 mCommandHandler.postDelayed(new Runnable() {
                     @Override
                     public void run() {
-                        mActivity.setLocationToColor(location, GolfBallDeliveryActivity.BallColor.NONE);
+                        clearLocation(location);
                         mActivity.mFirebaseRef.child("messages").setValue("clearing ball 1");
                     }
                 }, ARM_REMOVAL_TIME);
@@ -153,7 +165,7 @@ public class Scripts {
                 mCommandHandler.postDelayed(new Runnable() {
                     @Override
                     public void run() {
-                        mActivity.setLocationToColor(location, GolfBallDeliveryActivity.BallColor.NONE);
+                        clearLocation(location);
                         mActivity.mFirebaseRef.child("messages").setValue("clearing ball 2");
                     }
                 }, ARM_REMOVAL_TIME);
@@ -185,7 +197,7 @@ public class Scripts {
                 mCommandHandler.postDelayed(new Runnable() {
                     @Override
                     public void run() {
-                        mActivity.setLocationToColor(location, GolfBallDeliveryActivity.BallColor.NONE);
+                        clearLocation(location);
                         mActivity.mFirebaseRef.child("messages").setValue("clearing ball 3");
                     }
                 }, ARM_REMOVAL_TIME);
@@ -194,4 +206,16 @@ public class Scripts {
 
 
     }
+
+    /**
+     * Blanks the ball button on the UI thread, the runnables above run on the control thread.
+     */
+    private void clearLocation(final int location) {
+        mActivity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                mActivity.setLocationToColor(location, GolfBallDeliveryActivity.BallColor.NONE);
+            }
+        });
+    }
 }
@@ -0,0 +1,155 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import edu.rosehulman.me435.DurationHistograms;
+
+/**
+ * Nanosecond timing histograms for each stage of the vision pipeline. The camera thread and the
+ * vision thread record into the same instance without locks (one DurationHistograms series per
+ * stage), and the results can be read or dumped to a file at any time from any thread.
+ *
+ * Typical use, where each lap records the time since the previous one:
+ * <pre>
+ *     long t = timings.start();
+ *     Imgproc.pyrDown(...);
+ *     t = timings.lap(StageTimings.PYR_DOWN, t);
+ * </pre>
+ * When timing is off, start returns 0 and lap only reads one volatile flag.
+ */
+public class StageTimings {
+    public static final int PYR_DOWN = 0;
+    public static final int CVT_COLOR = 1;
+    public static final int IN_RANGE = 2;
+    public static final int LOOKUP_TABLE = 3;
+    public static final int DILATE = 4;
+    public static final int FIND_CONTOURS = 5;
+    public static final int CONTOUR_STATS = 6;
+    public static final int DETECTOR_TOTAL = 7;
+    public static final int FIND_CONE = 8;
+    public static final int CAMERA_FRAME = 9;
+    // Glass to wheel latency, split at each hand off between threads.
+    public static final int LATENCY_CAMERA = 10;  // preview callback to onCameraFrame
+    public static final int LATENCY_QUEUE = 11;   // publish to the vision thread picking it up
+    public static final int LATENCY_VISION = 12;  // detector and findCone
+    public static final int LATENCY_UI = 13;      // vision result to the control thread
+    public static final int LATENCY_LOOP = 14;    // control thread hand-off to the wheel command
+    public static final int LATENCY_USB = 15;     // sendCommand to the accessory write returning
+    public static final int GLASS_TO_WHEEL = 16;  // preview callback to the accessory write returning
+    public static final int BLOB_LABELING = 17;
+    public static final int STAGE_COUNT = 18;
+
+    private static final String[] STAGE_NAMES = {
+            "pyrDown", "cvtColor", "inRange", "lookupTable", "dilate", "findContours",
+            "contourStats", "detectorTotal", "findCone", "onCameraFrame",
+            "cameraDelivery", "visionQueue", "vision", "controlPost", "loopDecision", "usbWrite",
+            "glassToWheel", "blobLabeling"
+    };
+
+    private final DurationHistograms mHistograms = new DurationHistograms(STAGE_COUNT);
+    private volatile boolean mEnabled = false;
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * @return The current time to pass to lap, or 0 when timing is off.
+     */
+    public long start() {
+        return mEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since startNs for a stage.
+     *
+     * @param startNs Value from start or the previous lap. Nothing is recorded when it is 0.
+     * @return The current time, for timing the next stage (0 when timing is off).
+     */
+    public long lap(int stage, long startNs) {
+        if (!mEnabled) {
+            return 0;
+        }
+        long nowNs = System.nanoTime();
+        if (startNs != 0) {
+            record(stage, nowNs - startNs);
+        }
+        return nowNs;
+    }
+
+    public void record(int stage, long durationNs) {
+        mHistograms.record(stage, durationNs);
+    }
+
+    public long getCount(int stage) {
+        return mHistograms.getCount(stage);
+    }
+
+    public double getMeanNs(int stage) {
+        return mHistograms.getMeanNs(stage);
+    }
+
+    public long getMaxNs(int stage) {
+        return mHistograms.getMaxNs(stage);
+    }
+
+    /**
+     * @param fraction For example 0.99 for the 99th percentile.
+     * @return Upper edge of the bucket holding that percentile, or 0 if nothing was recorded.
+     */
+    public long getPercentileNs(int stage, double fraction) {
+        return mHistograms.getPercentileNs(stage, fraction);
+    }
+
+    public static String getStageName(int stage) {
+        return STAGE_NAMES[stage];
+    }
+
+    public void reset() {
+        mHistograms.reset();
+    }
+
+    /**
+     * One line per stage that has samples: count, mean, p50, p90, p99 and max in microseconds.
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (int stage = 0; stage < STAGE_COUNT; stage++) {
+            long count = getCount(stage);
+            if (count == 0) {
+                continue;
+            }
+            sb.append(String.format("%-14s n=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus%n",
+                    STAGE_NAMES[stage], count, getMeanNs(stage) / 1000.0,
+                    getPercentileNs(stage, 0.5) / 1000.0, getPercentileNs(stage, 0.9) / 1000.0,
+                    getPercentileNs(stage, 0.99) / 1000.0, getMaxNs(stage) / 1000.0));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the summary followed by the raw bucket counts (one row per stage) to a text file.
+     */
+    public void dump(File file) throws IOException {
+        PrintWriter writer = new PrintWriter(new FileWriter(file));
+        try {
+            writer.print(summary());
+            writer.println();
+            writer.print("stage");
+            DurationHistograms.printBucketHeader(writer);
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                writer.print(STAGE_NAMES[stage]);
+                mHistograms.printBuckets(writer, stage);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
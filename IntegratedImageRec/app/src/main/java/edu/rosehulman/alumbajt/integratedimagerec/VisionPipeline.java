@@ -0,0 +1,158 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import android.util.Log;
+
+import org.opencv.core.Mat;
+
+/**
+ * Moves image processing off of the camera thread. The camera thread publishes each frame into a
+ * single latest-frame-wins slot and returns right away, and a dedicated worker thread processes
+ * whatever frame is newest when it is ready for more work. A frame that is replaced before the
+ * worker takes it, or that is older than the max frame age when the worker gets to it, is dropped.
+ *
+ * The camera thread only holds the lock long enough to copy the frame, so slow processing never
+ * holds up preview delivery.
+ */
+public class VisionPipeline {
+    private static final String TAG = "VisionPipeline";
+
+    /**
+     * Called on the worker thread with the newest frame. The Mat belongs to the pipeline and is only
+     * valid until the call returns. publishTimeNs is the System.nanoTime() when publish was called.
+     */
+    public interface FrameProcessor {
+        void processFrame(Mat frame, long captureTimeNs, long publishTimeNs);
+    }
+
+    private final FrameProcessor mProcessor;
+    private final long mMaxFrameAgeNs;
+
+    // Frame waiting for the worker, and the frame the worker is using. Swapped under the lock.
+    private Mat mPendingFrame = new Mat();
+    private Mat mWorkingFrame = new Mat();
+    private long mPendingTimeNs;
+    private long mPendingPublishNs;
+    private boolean mHasPending = false;
+    private boolean mRunning = false;
+    private Thread mThread;
+
+    private long mProcessedFrames = 0;
+    private long mReplacedFrames = 0;
+    private long mStaleFrames = 0;
+
+    /**
+     * @param processor     Work to do on each frame.
+     * @param maxFrameAgeMs Frames older than this when the worker picks them up are skipped.
+     */
+    public VisionPipeline(FrameProcessor processor, long maxFrameAgeMs) {
+        mProcessor = processor;
+        mMaxFrameAgeNs = maxFrameAgeMs * 1000000L;
+    }
+
+    public synchronized void start() {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mHasPending = false;
+        mThread = new Thread(new Worker(), TAG);
+        mThread.start();
+    }
+
+    /**
+     * Stops the worker and waits for the frame in progress (if any) to finish.
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            mRunning = false;
+            thread = mThread;
+            mThread = null;
+            notify();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Log.e(TAG, "Interrupted waiting for the vision thread", e);
+            }
+        }
+        synchronized (this) {
+            mPendingFrame.release();
+            mWorkingFrame.release();
+        }
+    }
+
+    /**
+     * Called from the camera thread. Copies the frame into the slot, replacing any frame the worker
+     * has not picked up yet.
+     */
+    public void publish(Mat frame, long captureTimeNs) {
+        synchronized (this) {
+            if (!mRunning) {
+                return;
+            }
+            if (mHasPending) {
+                mReplacedFrames++;
+            }
+            frame.copyTo(mPendingFrame);
+            mPendingTimeNs = captureTimeNs;
+            mPendingPublishNs = System.nanoTime();
+            mHasPending = true;
+            notify();
+        }
+    }
+
+    public synchronized long getProcessedFrameCount() {
+        return mProcessedFrames;
+    }
+
+    /**
+     * Frames dropped because a newer frame arrived before the worker was free.
+     */
+    public synchronized long getReplacedFrameCount() {
+        return mReplacedFrames;
+    }
+
+    /**
+     * Frames dropped because they were older than the max frame age.
+     */
+    public synchronized long getStaleFrameCount() {
+        return mStaleFrames;
+    }
+
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            while (true) {
+                long captureTimeNs;
+                long publishTimeNs;
+                synchronized (VisionPipeline.this) {
+                    while (mRunning && !mHasPending) {
+                        try {
+                            VisionPipeline.this.wait();
+                        } catch (InterruptedException e) {
+                            Log.e(TAG, "Vision thread interrupted", e);
+                        }
+                    }
+                    if (!mRunning) {
+                        break;
+                    }
+                    Mat newest = mPendingFrame;
+                    mPendingFrame = mWorkingFrame;
+                    mWorkingFrame = newest;
+                    captureTimeNs = mPendingTimeNs;
+                    publishTimeNs = mPendingPublishNs;
+                    mHasPending = false;
+                    if (System.nanoTime() - captureTimeNs > mMaxFrameAgeNs) {
+                        mStaleFrames++;
+                        continue;
+                    }
+                    mProcessedFrames++;
+                }
+                mProcessor.processFrame(mWorkingFrame, captureTimeNs, publishTimeNs);
+            }
+            Log.d(TAG, "Finish vision thread");
+        }
+    }
+}
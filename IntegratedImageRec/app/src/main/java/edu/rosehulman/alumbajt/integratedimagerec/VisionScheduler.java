@@ -0,0 +1,73 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+/**
+ * Decides which camera frames go to the vision thread, based on how much vision the current FSM
+ * state needs:
+ * <ul>
+ *     <li>VISION_OFF: no frames are processed (cone results would be ignored anyway).</li>
+ *     <li>VISION_SEARCH: a frame every search interval, at the detector's default resolution.</li>
+ *     <li>VISION_TRACK: every frame, with the adaptive pyramid free to pick the resolution.</li>
+ * </ul>
+ * Dropped frames are skipped in onCameraFrame before any copy or color conversion, so the CPU goes
+ * to the control loop instead (and the phone runs cooler over a long match).
+ *
+ * The mode is set from the control thread (by the FSM on each state change) and read from the
+ * camera and vision threads, so it is volatile. The search interval may be set from any thread.
+ */
+public class VisionScheduler {
+    public static final int VISION_OFF = 0;
+    public static final int VISION_SEARCH = 1;
+    public static final int VISION_TRACK = 2;
+
+    private static final String[] MODE_NAMES = {"off", "search", "track"};
+
+    private volatile int mMode = VISION_TRACK;
+    private volatile long mSearchIntervalNs = 200000000L;
+    // Only touched by the camera thread.
+    private long mLastAcceptedNs = 0;
+
+    public void setMode(int mode) {
+        mMode = mode;
+    }
+
+    public int getMode() {
+        return mMode;
+    }
+
+    public static String getModeName(int mode) {
+        return MODE_NAMES[mode];
+    }
+
+    /**
+     * Time between processed frames in VISION_SEARCH mode.
+     */
+    public void setSearchIntervalMs(long intervalMs) {
+        mSearchIntervalNs = intervalMs * 1000000L;
+    }
+
+    /**
+     * Called by the camera thread for each frame.
+     *
+     * @return True if this frame should be published to the vision thread.
+     */
+    public boolean acceptFrame(long captureTimeNs) {
+        switch (mMode) {
+            case VISION_OFF:
+                return false;
+            case VISION_SEARCH:
+                if (captureTimeNs - mLastAcceptedNs < mSearchIntervalNs) {
+                    return false;
+                }
+                break;
+        }
+        mLastAcceptedNs = captureTimeNs;
+        return true;
+    }
+
+    /**
+     * True when the detector may trade resolution for speed (adaptive pyramid) in this mode.
+     */
+    public boolean isAdaptiveResolution() {
+        return mMode == VISION_TRACK;
+    }
+}
@@ -0,0 +1,186 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Scalar;
+
+import java.util.List;
+
+/**
+ * ColorBlobDetector variant that works straight from the camera's NV21 data. Pixels are classified
+ * in YUV space with a ColorLookupTable built from the HSV target, so the NV21 to RGBA and RGB to HSV
+ * conversions (and the pyrDown calls) are skipped. The mask is sampled at 1/4 size like the two
+ * pyrDown calls of ColorBlobDetector, so contours, stats and findCone results line up.
+ */
+public class YuvBlobDetector {
+    // Sample every 4th pixel in each direction (same mask size as two pyrDown calls).
+    private static final int STEP = 4;
+
+    // Lower and Upper bounds for range checking in HSV color space
+    private double[] mLowerBound = new double[3];
+    private double[] mUpperBound = new double[3];
+    // Minimum contour area in percent for contours filtering
+    private double mMinContourArea = 0.1;
+    // Color radius for range checking in HSV color space
+    private Scalar mColorRadius = new Scalar(25, 50, 50, 0);
+    private final ColorLookupTable mTable = new ColorLookupTable(ColorLookupTable.SPACE_YUV);
+
+    // Cache
+    private final Mat mMask = new Mat();
+    private final Scalar mContourScale = new Scalar(STEP, STEP);
+    private final ContourExtractor mExtractor = new ContourExtractor();
+    private byte[] mYuvBuffer = new byte[0];
+    private byte[] mMaskBuffer = new byte[0];
+    // Single pass labeling straight from mMaskBuffer, used instead of the extractor when enabled.
+    private final BlobLabeler mLabeler = new BlobLabeler();
+    private byte[] mDilatedBuffer = new byte[0];
+    private boolean mBlobLabeling = false;
+    // Off until setStageTimings shares the activity's histograms.
+    private StageTimings mTimings = new StageTimings();
+
+    // Last target color, so a radius change can rebuild the table without a new target.
+    private Scalar mHsvColor;
+
+    public void setColorRadius(Scalar radius) {
+        if (mHsvColor == null) {
+            mColorRadius = radius;
+        } else {
+            setHsvColor(mHsvColor, radius);
+        }
+    }
+
+    public void setHsvColor(Scalar hsvColor) {
+        setHsvColor(hsvColor, mColorRadius);
+    }
+
+    /**
+     * Same target and bounds as ColorBlobDetector.setHsvColor, compiled into the YUV table. The
+     * 32768 entry table is only rebuilt when the bounds actually move.
+     */
+    public void setHsvColor(Scalar hsvColor, Scalar radius) {
+        boolean firstTarget = mHsvColor == null;
+        mHsvColor = hsvColor;
+        mColorRadius = radius;
+        double minH = (hsvColor.val[0] >= radius.val[0]) ? hsvColor.val[0] - radius.val[0] : 0;
+        double maxH = (hsvColor.val[0] + radius.val[0] <= 255) ? hsvColor.val[0] + radius.val[0] : 255;
+
+        boolean changed = setBounds(0, minH, maxH)
+                | setBounds(1, hsvColor.val[1] - radius.val[1], hsvColor.val[1] + radius.val[1])
+                | setBounds(2, hsvColor.val[2] - radius.val[2], hsvColor.val[2] + radius.val[2]);
+
+        if (changed || firstTarget) {
+            mTable.build(mLowerBound, mUpperBound);
+        }
+    }
+
+    /**
+     * @return True if the channel's bounds changed.
+     */
+    private boolean setBounds(int channel, double lower, double upper) {
+        boolean changed = mLowerBound[channel] != lower || mUpperBound[channel] != upper;
+        mLowerBound[channel] = lower;
+        mUpperBound[channel] = upper;
+        return changed;
+    }
+
+    /**
+     * Records the sampling / table lookup and contour stage times into the given histograms.
+     */
+    public void setStageTimings(StageTimings timings) {
+        mTimings = timings;
+        mExtractor.setStageTimings(timings);
+    }
+
+    /**
+     * Finds the blobs with BlobLabeler (one pass over the mask, no Mat, findContours or contour
+     * moments) instead of ContourExtractor. Results then come from getBlobs, and getContours /
+     * getContourStats are left empty.
+     */
+    public void setBlobLabelingEnabled(boolean enabled) {
+        mBlobLabeling = enabled;
+        mExtractor.clear();
+    }
+
+    public void setMinContourArea(double area) {
+        mMinContourArea = area;
+    }
+
+    /**
+     * @param yuvFrame NV21 data as delivered by the camera: height * 3 / 2 rows of width bytes,
+     *                 full size Y plane followed by the interleaved V, U plane at half size.
+     * @param width    Width of the image in pixels.
+     * @param height   Height of the image in pixels.
+     */
+    public void process(Mat yuvFrame, int width, int height) {
+        long startNs = mTimings.start();
+        int frameBytes = width * height * 3 / 2;
+        if (mYuvBuffer.length != frameBytes) {
+            mYuvBuffer = new byte[frameBytes];
+        }
+        yuvFrame.get(0, 0, mYuvBuffer);
+
+        int maskCols = width / STEP;
+        int maskRows = height / STEP;
+        if (mMaskBuffer.length != maskCols * maskRows) {
+            mMaskBuffer = new byte[maskCols * maskRows];
+        }
+
+        byte[] yuv = mYuvBuffer;
+        int chromaStart = width * height;
+        int i = 0;
+        for (int row = 0; row < maskRows; row++) {
+            int y = row * STEP;
+            int yRow = y * width;
+            // Chroma is stored once for each 2x2 block as V then U.
+            int vuRow = chromaStart + (y / 2) * width;
+            for (int col = 0; col < maskCols; col++) {
+                int x = col * STEP;
+                int lum = yuv[yRow + x] & 0xFF;
+                int v = yuv[vuRow + x] & 0xFF;
+                int u = yuv[vuRow + x + 1] & 0xFF;
+                mMaskBuffer[i++] = mTable.contains(lum, u, v) ? (byte) 255 : 0;
+            }
+        }
+
+        long t = mTimings.lap(StageTimings.LOOKUP_TABLE, startNs);
+        if (mBlobLabeling) {
+            if (mDilatedBuffer.length != mMaskBuffer.length) {
+                mDilatedBuffer = new byte[mMaskBuffer.length];
+            }
+            BlobLabeler.dilate(mMaskBuffer, mDilatedBuffer, maskCols, maskRows, 0, maskRows);
+            t = mTimings.lap(StageTimings.DILATE, t);
+            mLabeler.label(mDilatedBuffer, maskCols, maskRows, STEP, mMinContourArea);
+            mTimings.lap(StageTimings.BLOB_LABELING, t);
+        } else {
+            mMask.create(maskRows, maskCols, CvType.CV_8UC1);
+            mMask.put(0, 0, mMaskBuffer);
+            mExtractor.extract(mMask, mContourScale, mMinContourArea);
+        }
+        if (startNs != 0) {
+            mTimings.record(StageTimings.DETECTOR_TOTAL, System.nanoTime() - startNs);
+        }
+    }
+
+    /**
+     * Contours found by the last call to process (recycled, valid until the next call).
+     */
+    public List<MatOfPoint> getContours() {
+        return mExtractor.getContours();
+    }
+
+    /**
+     * Area, bounding box and moments of each contour returned by getContours (same order).
+     */
+    public List<ContourStats> getContourStats() {
+        return mExtractor.getContourStats();
+    }
+
+    /**
+     * Blobs found by the last call to process when blob labeling is enabled (recycled, valid until
+     * the next call).
+     */
+    public List<Blob> getBlobs() {
+        return mLabeler.getBlobs();
+    }
+}
@@ -65,6 +65,17 @@ public class AccessoryActivity extends AppCompatActivity {
     //Toast.makeText(this, "Received command = " + receivedCommand, Toast.LENGTH_SHORT).show();
     Log.d(TAG, "Received command = " + receivedCommand);
   }
+
+  /**
+   * Called on the background writer thread after a traced command has been
+   * written (or failed to write) to the accessory. Override to record latency.
+   * 
+   * @param command The command that was sent.
+   * @param traceStartNs Value given to sendCommand.
+   * @param queuedNs System.nanoTime() when sendCommand was called.
+   * @param writtenNs System.nanoTime() after the write returned. */
+  protected void onCommandWritten(String command, long traceStartNs, long queuedNs, long writtenNs) {
+  }
   
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -104,6 +115,18 @@ public class AccessoryActivity extends AppCompatActivity {
   };
   
   public void sendCommand(String commandString) {
+    sendCommand(commandString, 0);
+  }
+
+  /**
+   * Same as sendCommand, but reports the write to onCommandWritten so the
+   * latency from some earlier event (like a camera frame) can be measured.
+   * 
+   * @param commandString Command to send.
+   * @param traceStartNs System.nanoTime() of the event this command reacts to,
+   *                     or 0 to skip the onCommandWritten callback. */
+  public void sendCommand(String commandString, final long traceStartNs) {
+    final long queuedNs = traceStartNs == 0 ? 0 : System.nanoTime();
     new AsyncTask<String, Void, Void>() {
       @Override
       protected Void doInBackground(String... params) {
@@ -122,6 +145,9 @@ public class AccessoryActivity extends AppCompatActivity {
             Log.e(TAG, "write failed", e);
           }
         }        
+        if (traceStartNs != 0) {
+          onCommandWritten(command, traceStartNs, queuedNs, System.nanoTime());
+        }
         return null;
       }
     }.execute(commandString);
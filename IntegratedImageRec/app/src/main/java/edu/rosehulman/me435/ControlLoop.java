@@ -0,0 +1,149 @@
+package edu.rosehulman.me435;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+
+/**
+ * High priority thread that calls a tick function at a fixed rate. Each tick is
+ * scheduled from the previous deadline (not from when the last tick finished),
+ * so the rate doesn't drift. When a tick runs late by more than a full
+ * interval the missed ticks are skipped instead of run back to back, since a
+ * burst of stale wheel commands is worse than a missing one.
+ *
+ * The thread has a Looper, so getHandler can be used to run other code (delayed
+ * script steps, sensor events) on the same thread as the ticks.
+ */
+public class ControlLoop {
+
+  /** Above the UI thread, the same priority Android uses for display work. */
+  public static final int THREAD_PRIORITY = Process.THREAD_PRIORITY_URGENT_DISPLAY;
+
+  private final HandlerThread mThread;
+  private final Handler mHandler;
+  private final Runnable mTick;
+
+  private long mIntervalMs;
+  private long mNextTickMs;
+  /** The same deadline on the System.nanoTime() clock, for timing the ticks. */
+  private long mNextTickNs;
+  private long mTickDeadlineNs;
+  private long mTicksSinceStart;
+  private volatile boolean mRunning = false;
+
+  /** Only written on the control thread. */
+  private volatile long mTickCount = 0;
+  private volatile long mSkippedTickCount = 0;
+
+  private final Runnable mTickRunnable = new Runnable() {
+    @Override
+    public void run() {
+      if (!mRunning) {
+        return;
+      }
+      mTickDeadlineNs = mNextTickNs;
+      mTick.run();
+      mTickCount++;
+      mTicksSinceStart++;
+      mNextTickMs += mIntervalMs;
+      mNextTickNs += mIntervalMs * 1000000L;
+      long nowMs = SystemClock.uptimeMillis();
+      if (nowMs >= mNextTickMs) {
+        long missed = (nowMs - mNextTickMs) / mIntervalMs + 1;
+        mSkippedTickCount += missed;
+        mNextTickMs += missed * mIntervalMs;
+        mNextTickNs += missed * mIntervalMs * 1000000L;
+      }
+      mHandler.postAtTime(this, mNextTickMs);
+    }
+  };
+
+  /**
+   * Starts the thread (ticks don't begin until start is called).
+   *
+   * @param name Thread name.
+   * @param tick Called on the control thread once per interval. */
+  public ControlLoop(String name, Runnable tick) {
+    mTick = tick;
+    mThread = new HandlerThread(name, THREAD_PRIORITY);
+    mThread.start();
+    mHandler = new Handler(mThread.getLooper());
+  }
+
+  /** Handler bound to the control thread. */
+  public Handler getHandler() {
+    return mHandler;
+  }
+
+  /** True when called from the control thread. */
+  public boolean isControlThread() {
+    return Looper.myLooper() == mThread.getLooper();
+  }
+
+  /** Begins ticking every intervalMs, starting right away. Safe to call from any thread. */
+  public void start(final long intervalMs) {
+    mHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        mHandler.removeCallbacks(mTickRunnable);
+        mIntervalMs = intervalMs;
+        mNextTickMs = SystemClock.uptimeMillis();
+        mNextTickNs = System.nanoTime();
+        mTicksSinceStart = 0;
+        mRunning = true;
+        mTickRunnable.run();
+      }
+    });
+  }
+
+  /** Changes the interval, starting from the next tick. Safe to call from any
+   * thread. */
+  public void setIntervalMs(final long intervalMs) {
+    mHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        mIntervalMs = intervalMs;
+      }
+    });
+  }
+
+  /** Stops ticking. Anything else posted to the handler still runs. */
+  public void stop() {
+    mHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        mRunning = false;
+        mHandler.removeCallbacks(mTickRunnable);
+      }
+    });
+  }
+
+  /** Ends the thread, dropping anything still posted to the handler. */
+  public void quit() {
+    mRunning = false;
+    mThread.quit();
+  }
+
+  /** System.nanoTime() the current tick was scheduled for. Control thread only. */
+  public long getTickDeadlineNs() {
+    return mTickDeadlineNs;
+  }
+
+  /** Ticks finished since the last start, so 0 during the first tick. Control
+   * thread only. */
+  public long getTicksSinceStart() {
+    return mTicksSinceStart;
+  }
+
+  /** Ticks run since the loop was created. */
+  public long getTickCount() {
+    return mTickCount;
+  }
+
+  /** Ticks skipped because an earlier tick (or other work on the thread) ran too long. */
+  public long getSkippedTickCount() {
+    return mSkippedTickCount;
+  }
+}
@@ -0,0 +1,136 @@
+package edu.rosehulman.me435;
+
+/**
+ * Differential drive dead reckoning from the wheel duty cycles. Each duty
+ * cycle goes through a calibrated duty cycle to wheel speed curve, then the
+ * pose is moved along the arc the two wheel speeds describe. Called at the
+ * control loop rate, it fills in position and heading between the 1 Hz GPS
+ * fixes, which snap the position back with setPosition.
+ *
+ * The wheels alone let the heading drift quickly (slip, uneven motors), so the
+ * heading is also pulled towards the phone's sensor heading by
+ * correctHeading. The wheels supply the turn rate between sensor readings.
+ *
+ * Headings are in field degrees (-180 to 180, counterclockwise positive) like
+ * the rest of the library. No Android dependencies, so the math runs on a
+ * plain JVM.
+ */
+public class DriveOdometry {
+
+  /** Default distance between the wheel centers in feet (measure your robot). */
+  public static final double DEFAULT_TRACK_WIDTH_FT = 1.0;
+
+  /** Default calibration: no motion below a duty cycle of 30, then linear up
+   * to RobotActivity.DEFAULT_SPEED_FT_PER_SEC at full duty. */
+  private static final int[] DEFAULT_DUTY_CYCLES = {0, 30, 255};
+  private static final double[] DEFAULT_SPEEDS_FT_PER_SEC = {0, 0, 3.3};
+
+  private int[] mDutyCycles = DEFAULT_DUTY_CYCLES;
+  private double[] mSpeedsFtPerSec = DEFAULT_SPEEDS_FT_PER_SEC;
+  private double mTrackWidthFt = DEFAULT_TRACK_WIDTH_FT;
+
+  private double mX, mY, mHeading;
+  private double mSpeedFtPerSec, mTurnRateDegreesPerSec;
+
+  /**
+   * Replaces the duty cycle to speed curve with measured points (for example
+   * timing a drive over a known distance at several duty cycles). Speeds
+   * between the points are interpolated. Negative duty cycles use the same
+   * curve backwards.
+   *
+   * @param dutyCycles Increasing duty cycles from 0 to 255.
+   * @param speedsFtPerSec Measured wheel speed at each duty cycle. */
+  public void setSpeedCurve(int[] dutyCycles, double[] speedsFtPerSec) {
+    if (dutyCycles.length != speedsFtPerSec.length || dutyCycles.length < 2) {
+      throw new IllegalArgumentException("Need at least two matching duty cycle and speed points");
+    }
+    mDutyCycles = dutyCycles.clone();
+    mSpeedsFtPerSec = speedsFtPerSec.clone();
+  }
+
+  /** Distance between the wheel centers in feet. */
+  public void setTrackWidthFt(double trackWidthFt) {
+    mTrackWidthFt = trackWidthFt;
+  }
+
+  /** Wheel speed in feet per second for a -255 to 255 duty cycle. */
+  public double getWheelSpeedFtPerSec(int dutyCycle) {
+    int magnitude = Math.abs(dutyCycle);
+    double speed = mSpeedsFtPerSec[mSpeedsFtPerSec.length - 1];
+    for (int i = 1; i < mDutyCycles.length; i++) {
+      if (magnitude <= mDutyCycles[i]) {
+        double fraction = (double) (magnitude - mDutyCycles[i - 1]) / (mDutyCycles[i] - mDutyCycles[i - 1]);
+        speed = mSpeedsFtPerSec[i - 1] + fraction * (mSpeedsFtPerSec[i] - mSpeedsFtPerSec[i - 1]);
+        break;
+      }
+    }
+    return dutyCycle < 0 ? -speed : speed;
+  }
+
+  /**
+   * Moves the pose for dtSeconds of driving at the given duty cycles.
+   *
+   * @param leftDutyCycle -255 to 255, as sent with sendWheelSpeed.
+   * @param rightDutyCycle -255 to 255, as sent with sendWheelSpeed.
+   * @param dtSeconds Time since the last update. */
+  public void update(int leftDutyCycle, int rightDutyCycle, double dtSeconds) {
+    double left = getWheelSpeedFtPerSec(leftDutyCycle);
+    double right = getWheelSpeedFtPerSec(rightDutyCycle);
+    mSpeedFtPerSec = (left + right) / 2.0;
+    double turnRateRadians = (right - left) / mTrackWidthFt;
+    mTurnRateDegreesPerSec = Math.toDegrees(turnRateRadians);
+    if (dtSeconds <= 0) {
+      return;
+    }
+    double distance = mSpeedFtPerSec * dtSeconds;
+    double turn = turnRateRadians * dtSeconds;
+    // Exact for a constant speed arc: the chord points along the heading
+    // halfway through the turn and is slightly shorter than the arc.
+    double chord = Math.abs(turn) < 1e-6 ? distance : distance * Math.sin(turn / 2.0) / (turn / 2.0);
+    double midHeading = Math.toRadians(mHeading) + turn / 2.0;
+    mX += chord * Math.cos(midHeading);
+    mY += chord * Math.sin(midHeading);
+    mHeading = NavUtils.normalizeAngle(mHeading + Math.toDegrees(turn));
+  }
+
+  /**
+   * Pulls the heading towards a heading from another source.
+   *
+   * @param heading Field heading in degrees, for example the sensor heading.
+   * @param weight 0 to ignore it, 1 to take it as is. */
+  public void correctHeading(double heading, double weight) {
+    mHeading = NavUtils.normalizeAngle(mHeading + weight * NavUtils.normalizeAngle(heading - mHeading));
+  }
+
+  /** Snaps the position to a fix (for example a GPS reading). */
+  public void setPosition(double x, double y) {
+    mX = x;
+    mY = y;
+  }
+
+  public void setHeading(double heading) {
+    mHeading = NavUtils.normalizeAngle(heading);
+  }
+
+  public double getX() {
+    return mX;
+  }
+
+  public double getY() {
+    return mY;
+  }
+
+  public double getHeading() {
+    return mHeading;
+  }
+
+  /** Forward speed (average of the wheels) from the last update, negative in reverse. */
+  public double getSpeedFtPerSec() {
+    return mSpeedFtPerSec;
+  }
+
+  /** Counterclockwise turn rate from the last update. */
+  public double getTurnRateDegreesPerSec() {
+    return mTurnRateDegreesPerSec;
+  }
+}
@@ -0,0 +1,111 @@
+package edu.rosehulman.me435;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed number of nanosecond duration histograms (series), shared by the
+ * vision stage timings and the control loop timings. Every bucket is an atomic
+ * counter, so any thread can record or read without locks.
+ *
+ * Buckets are powers of two, so bucket b counts durations from 2^b up to
+ * 2^(b+1) ns. Percentiles are reported as the upper edge of their bucket,
+ * which is within a factor of two.
+ */
+public class DurationHistograms {
+
+  /** 2^40 ns is about 18 minutes, longer durations land in the last bucket. */
+  public static final int BUCKETS = 40;
+
+  private final int mSeriesCount;
+  private final AtomicLongArray mBuckets;
+  private final AtomicLongArray mCounts;
+  private final AtomicLongArray mTotalNs;
+  private final AtomicLongArray mMaxNs;
+
+  public DurationHistograms(int seriesCount) {
+    mSeriesCount = seriesCount;
+    mBuckets = new AtomicLongArray(seriesCount * BUCKETS);
+    mCounts = new AtomicLongArray(seriesCount);
+    mTotalNs = new AtomicLongArray(seriesCount);
+    mMaxNs = new AtomicLongArray(seriesCount);
+  }
+
+  public int getSeriesCount() {
+    return mSeriesCount;
+  }
+
+  /** Adds one duration to a series, negative durations count as 0. */
+  public void record(int series, long durationNs) {
+    if (durationNs < 0) {
+      durationNs = 0;
+    }
+    int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(durationNs | 1));
+    mBuckets.incrementAndGet(series * BUCKETS + bucket);
+    mCounts.incrementAndGet(series);
+    mTotalNs.addAndGet(series, durationNs);
+    long max = mMaxNs.get(series);
+    while (durationNs > max && !mMaxNs.compareAndSet(series, max, durationNs)) {
+      max = mMaxNs.get(series);
+    }
+  }
+
+  public long getCount(int series) {
+    return mCounts.get(series);
+  }
+
+  public double getMeanNs(int series) {
+    long count = mCounts.get(series);
+    return count == 0 ? 0 : (double) mTotalNs.get(series) / count;
+  }
+
+  public long getMaxNs(int series) {
+    return mMaxNs.get(series);
+  }
+
+  /**
+   * @param fraction For example 0.99 for the 99th percentile.
+   * @return Upper edge of the bucket holding that percentile, or 0 if nothing was recorded. */
+  public long getPercentileNs(int series, double fraction) {
+    long count = mCounts.get(series);
+    if (count == 0) {
+      return 0;
+    }
+    long target = (long) Math.ceil(fraction * count);
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += mBuckets.get(series * BUCKETS + b);
+      if (seen >= target) {
+        return Math.min(1L << (b + 1), mMaxNs.get(series));
+      }
+    }
+    return mMaxNs.get(series);
+  }
+
+  public void reset() {
+    for (int i = 0; i < mBuckets.length(); i++) {
+      mBuckets.set(i, 0);
+    }
+    for (int series = 0; series < mSeriesCount; series++) {
+      mCounts.set(series, 0);
+      mTotalNs.set(series, 0);
+      mMaxNs.set(series, 0);
+    }
+  }
+
+  /** Writes the lower edge of every bucket, each after a comma, to go after the row label columns. */
+  public static void printBucketHeader(PrintWriter writer) {
+    for (int b = 0; b < BUCKETS; b++) {
+      writer.print("," + (1L << b));
+    }
+    writer.println();
+  }
+
+  /** Writes the bucket counts of one series, each after a comma, and ends the row. */
+  public void printBuckets(PrintWriter writer, int series) {
+    for (int b = 0; b < BUCKETS; b++) {
+      writer.print("," + mBuckets.get(series * BUCKETS + b));
+    }
+    writer.println();
+  }
+}
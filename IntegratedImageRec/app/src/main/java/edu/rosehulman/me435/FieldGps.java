@@ -41,7 +41,7 @@ public class FieldGps implements LocationListener {
   /** Value returned for the accuracy if no accuracy is available. */
   public static final double NO_ACCURACY_AVAILABE = Double.NaN;
   /** Conversion factor to convert to feet. */
-  public static final double FEET_PER_METER = 3.28084;
+  public static final double FEET_PER_METER = FieldGpsMath.FEET_PER_METER;
   
   /** Some default field coordinates if unknown initially. */
   public static final double ROSE_FRONT_CIRCLE_LATITUDE = 39.482363;
@@ -52,6 +52,9 @@ public class FieldGps implements LocationListener {
   /** Member variables that define the field origin and X-Axis. */
   private double mLatitudeOrigin, mLongitudeOrigin, mLatitudeOnXAxis, mLongitudeOnXAxis;
 
+  /** Field X, Y and X axis bearing from the last conversion (see FieldGpsMath). */
+  private final double[] mFieldResult = new double[3];
+
   /** Listener that will be called when new GPS locations are available. */
   private FieldGpsListener mListener;
 
@@ -188,38 +191,18 @@ public class FieldGps implements LocationListener {
    *          Location to convert and send.
    */
   public void dispatchOnLocationChangedEvent(Location location) {
-    float[] originToXAxisLocation = new float[2];
-    Location.distanceBetween(mLatitudeOrigin, mLongitudeOrigin, mLatitudeOnXAxis,
-        mLongitudeOnXAxis, originToXAxisLocation);
-    float[] originToCurrentLocation = new float[2];
-    Location.distanceBetween(mLatitudeOrigin, mLongitudeOrigin, location.getLatitude(),
-        location.getLongitude(), originToCurrentLocation);
-    double thetaRadians = (originToXAxisLocation[1] - originToCurrentLocation[1]) * Math.PI / 180.0;
-    double fieldX = originToCurrentLocation[0] * Math.cos(thetaRadians) * FEET_PER_METER;
-    double fieldY = originToCurrentLocation[0] * Math.sin(thetaRadians) * FEET_PER_METER;
+    FieldGpsMath.toFieldCoordinates(mLatitudeOrigin, mLongitudeOrigin, mLatitudeOnXAxis,
+        mLongitudeOnXAxis, location.getLatitude(), location.getLongitude(), mFieldResult);
+    double fieldX = mFieldResult[FieldGpsMath.RESULT_INDEX_X];
+    double fieldY = mFieldResult[FieldGpsMath.RESULT_INDEX_Y];
     double fieldBearing = NO_BEARING_AVAILABLE;
     if (location.hasBearing()) {
-      fieldBearing = originToXAxisLocation[1] - location.getBearing();
-      fieldBearing = normalizeAngle(fieldBearing);
+      fieldBearing = (float) mFieldResult[FieldGpsMath.RESULT_INDEX_X_AXIS_BEARING] - location.getBearing();
+      fieldBearing = NavUtils.normalizeAngle(fieldBearing);
     }
     mListener.onLocationChanged(fieldX, fieldY, fieldBearing, mLastGpsLocation);
   }
 
-  /**
-   * Normalize any angle to -180 to 180.
-   * 
-   * @param angle
-   *          Original angle that is not normalized.
-   * @return A normalized equivalent angle.
-   */
-  private double normalizeAngle(double angle) {
-    while (angle <= -180.0)
-      angle += 360.0;
-    while (angle > 180.0)
-      angle -= 360.0;
-    return angle;
-  }
-
   // Other required methods from the LocationListener.
   public void onProviderDisabled(String provider) {
     // Intentionally left blank.
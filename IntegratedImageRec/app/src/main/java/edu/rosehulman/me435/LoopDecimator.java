@@ -0,0 +1,72 @@
+package edu.rosehulman.me435;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Runs slower consumers (text views, Firebase, speech) off the control loop,
+ * each at its own interval, so speeding up the loop doesn't speed them up too.
+ * The control thread calls tick every loop. Each subscriber runs at most once
+ * per interval, either right there on the control thread or posted to the UI
+ * thread. A UI subscriber that hasn't run yet isn't posted again, so a busy UI
+ * thread never builds up a backlog.
+ */
+public class LoopDecimator {
+
+  private static class Subscriber {
+    final long mIntervalNs;
+    final boolean mOnUiThread;
+    final Runnable mAction;
+    final Runnable mUiRunnable;
+    long mNextNs = 0;
+    volatile boolean mPending = false;
+
+    Subscriber(long intervalMs, boolean onUiThread, Runnable action) {
+      mIntervalNs = intervalMs * 1000000L;
+      mOnUiThread = onUiThread;
+      mAction = action;
+      mUiRunnable = new Runnable() {
+        public void run() {
+          mPending = false;
+          mAction.run();
+        }
+      };
+    }
+  }
+
+  private final Handler mUiHandler = new Handler(Looper.getMainLooper());
+  private final List<Subscriber> mSubscribers = new CopyOnWriteArrayList<Subscriber>();
+
+  /**
+   * Adds a consumer. Safe to call from any thread.
+   *
+   * @param intervalMs Shortest time between runs.
+   * @param onUiThread True to post the action to the UI thread, false to run it
+   *                   on the control thread.
+   * @param action Work to do. */
+  public void subscribe(long intervalMs, boolean onUiThread, Runnable action) {
+    mSubscribers.add(new Subscriber(intervalMs, onUiThread, action));
+  }
+
+  /** Runs or posts every subscriber that is due. Control thread only. */
+  public void tick(long nowNs) {
+    for (int i = 0; i < mSubscribers.size(); i++) {
+      Subscriber subscriber = mSubscribers.get(i);
+      if (subscriber.mNextNs != 0 && nowNs - subscriber.mNextNs < 0) {
+        continue;
+      }
+      // Next run is one interval on, or one interval from now if this one is late.
+      subscriber.mNextNs = subscriber.mNextNs == 0 || nowNs - subscriber.mNextNs >= subscriber.mIntervalNs
+          ? nowNs + subscriber.mIntervalNs : subscriber.mNextNs + subscriber.mIntervalNs;
+      if (!subscriber.mOnUiThread) {
+        subscriber.mAction.run();
+      } else if (!subscriber.mPending) {
+        subscriber.mPending = true;
+        mUiHandler.post(subscriber.mUiRunnable);
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package edu.rosehulman.me435;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograms of how well the control loop keeps time, split by phase (for
+ * example the FSM state that was active when the tick started). For each tick
+ * it records:
+ * <ul>
+ * <li>period: time since the previous tick started.</li>
+ * <li>execution: how long the tick itself ran.</li>
+ * <li>lateness: how far after its deadline the tick started.</li>
+ * </ul>
+ * A tick that finishes after the next tick's deadline is an overrun (the loop
+ * will skip at least one tick).
+ *
+ * Each phase and metric is one DurationHistograms series, like the vision
+ * stage timings. Written by the control thread, safe to read from any thread.
+ */
+public class LoopTimings {
+
+  public static final int PERIOD = 0;
+  public static final int EXECUTION = 1;
+  public static final int LATENESS = 2;
+  public static final int METRIC_COUNT = 3;
+
+  private static final String[] METRIC_NAMES = {"period", "execution", "lateness"};
+
+  private final String[] mPhaseNames;
+  private volatile long mIntervalNs;
+  private final DurationHistograms mHistograms;
+  private final AtomicLongArray mOverruns;
+
+  /** Start of the previous tick, 0 before the first. Control thread only. */
+  private long mLastStartNs = 0;
+
+  /**
+   * @param phaseNames Name of each phase index passed to record.
+   * @param intervalMs Loop interval, used to spot overruns. */
+  public LoopTimings(String[] phaseNames, long intervalMs) {
+    mPhaseNames = phaseNames;
+    mIntervalNs = intervalMs * 1000000L;
+    mHistograms = new DurationHistograms(phaseNames.length * METRIC_COUNT);
+    mOverruns = new AtomicLongArray(phaseNames.length);
+  }
+
+  /**
+   * Records one tick.
+   *
+   * @param phase Phase active when the tick started.
+   * @param deadlineNs System.nanoTime() the tick was scheduled for.
+   * @param startNs System.nanoTime() when the tick started.
+   * @param endNs System.nanoTime() when the tick finished. */
+  public void record(int phase, long deadlineNs, long startNs, long endNs) {
+    if (mLastStartNs != 0) {
+      add(phase, PERIOD, startNs - mLastStartNs);
+    }
+    mLastStartNs = startNs;
+    add(phase, EXECUTION, endNs - startNs);
+    add(phase, LATENESS, startNs - deadlineNs);
+    if (endNs - deadlineNs > mIntervalNs) {
+      mOverruns.incrementAndGet(phase);
+    }
+  }
+
+  /** Forgets the previous tick, so the gap while the loop was stopped isn't
+   * recorded as a period. Call from the control thread. */
+  public void restart() {
+    mLastStartNs = 0;
+  }
+
+  /** Loop interval used to spot overruns from now on. */
+  public void setIntervalMs(long intervalMs) {
+    mIntervalNs = intervalMs * 1000000L;
+  }
+
+  public int getPhaseCount() {
+    return mPhaseNames.length;
+  }
+
+  public String getPhaseName(int phase) {
+    return mPhaseNames[phase];
+  }
+
+  public static String getMetricName(int metric) {
+    return METRIC_NAMES[metric];
+  }
+
+  /** Ticks recorded in the phase. */
+  public long getCount(int phase) {
+    return mHistograms.getCount(phase * METRIC_COUNT + EXECUTION);
+  }
+
+  public long getOverrunCount(int phase) {
+    return mOverruns.get(phase);
+  }
+
+  public double getMeanNs(int phase, int metric) {
+    return mHistograms.getMeanNs(phase * METRIC_COUNT + metric);
+  }
+
+  public long getMaxNs(int phase, int metric) {
+    return mHistograms.getMaxNs(phase * METRIC_COUNT + metric);
+  }
+
+  /**
+   * @param fraction For example 0.99 for the 99th percentile.
+   * @return Upper edge of the bucket holding that percentile, or 0 if nothing was recorded. */
+  public long getPercentileNs(int phase, int metric, double fraction) {
+    return mHistograms.getPercentileNs(phase * METRIC_COUNT + metric, fraction);
+  }
+
+  /** Clears every histogram (for example when a match starts). */
+  public void reset() {
+    mHistograms.reset();
+    for (int i = 0; i < mOverruns.length(); i++) {
+      mOverruns.set(i, 0);
+    }
+  }
+
+  /**
+   * For each phase with ticks: the tick and overrun counts, then mean, p50,
+   * p99 and max in milliseconds for each metric. */
+  public String summary() {
+    StringBuilder sb = new StringBuilder();
+    for (int phase = 0; phase < mPhaseNames.length; phase++) {
+      long count = getCount(phase);
+      if (count == 0) {
+        continue;
+      }
+      sb.append(String.format("%s n=%d overruns=%d%n", mPhaseNames[phase], count, mOverruns.get(phase)));
+      for (int metric = 0; metric < METRIC_COUNT; metric++) {
+        sb.append(String.format("  %-9s mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms%n",
+            METRIC_NAMES[metric], getMeanNs(phase, metric) / 1e6,
+            getPercentileNs(phase, metric, 0.5) / 1e6, getPercentileNs(phase, metric, 0.99) / 1e6,
+            getMaxNs(phase, metric) / 1e6));
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes the summary followed by the raw bucket counts (one row per phase
+   * and metric) to a text file. */
+  public void dump(File file) throws IOException {
+    PrintWriter writer = new PrintWriter(new FileWriter(file));
+    try {
+      writer.print(summary());
+      writer.println();
+      writer.print("phase,metric,overruns");
+      DurationHistograms.printBucketHeader(writer);
+      for (int phase = 0; phase < mPhaseNames.length; phase++) {
+        for (int metric = 0; metric < METRIC_COUNT; metric++) {
+          writer.print(mPhaseNames[phase] + "," + METRIC_NAMES[metric] + "," + mOverruns.get(phase));
+          mHistograms.printBuckets(writer, phase * METRIC_COUNT + metric);
+        }
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  private void add(int phase, int metric, long durationNs) {
+    mHistograms.record(phase * METRIC_COUNT + metric, durationNs);
+  }
+}
@@ -4,11 +4,12 @@ import android.location.Location;
 import android.os.Bundle;
 import android.os.Handler;
 import android.support.annotation.NonNull;
+import android.util.Log;
 import android.view.WindowManager;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Timer;
-import java.util.TimerTask;
 
 /** 
  * This class is intended to be subclasses by your main activity. It subclasses
@@ -35,10 +36,21 @@ import java.util.TimerTask;
  * features you need and let this layer save member variables for real world
  * feedback.
  * 
+ * Threading: loop() runs on a dedicated high priority control thread (see
+ * ControlLoop) so a slow UI frame can't delay a wheel command. Views can only
+ * be touched on the UI thread, so do display work in updateUi(), which is
+ * posted to the UI thread at the lower UI_INTERVAL_MS rate. Other slow
+ * consumers (Firebase, speech, extra views) subscribe to mLoopDecimator at
+ * their own rates instead of running every loop. mCommandHandler
+ * runs on the control thread too. Use runOnControlThread to hand UI events
+ * (button clicks) to the FSM.
+ * 
  * @author fisherds@gmail.com (Dave Fisher)
  * */
 public class RobotActivity extends AccessoryActivity implements FieldGpsListener, FieldOrientationListener {
 
+  private static final String TAG = RobotActivity.class.getSimpleName();
+
   /** Field GPS instance that gives field feet and field bearings. */
   protected FieldGps mFieldGps;
 
@@ -50,7 +62,7 @@ public class RobotActivity extends AccessoryActivity implements FieldGpsListener
 
   // GPS member variables.
   /** Most recent readings of the GPS. */
-  public double mCurrentGpsX, mCurrentGpsY, mCurrentGpsHeading;
+  public volatile double mCurrentGpsX, mCurrentGpsY, mCurrentGpsHeading;
 
   /** Counter that tracks the total number of GPS readings. */
   protected int mGpsCounter = 0;
@@ -94,37 +106,79 @@ public class RobotActivity extends AccessoryActivity implements FieldGpsListener
 
   // Movement
   /** Most recent sensor heading (updates MANY times per second). */
-  protected double mCurrentSensorHeading;
+  protected volatile double mCurrentSensorHeading;
 
   /** Boolean set to true when the robot is moving forward. */
-  protected boolean mMovingForward = false;
+  protected volatile boolean mMovingForward = false;
 
   /** Boolean set to true when the robot is moving forward in a straight line. */
-  protected boolean mMovingStraight = false;
+  protected volatile boolean mMovingStraight = false;
 
-  /** Guess at the XY value based on the last GPS reading and current speed. */
-  protected double mGuessX, mGuessY;
+  /** Guess at the XY value and heading based on the last GPS reading and the
+   * wheel odometry since. Updated on the control thread. */
+  protected volatile double mGuessX, mGuessY, mGuessHeading;
 
-  /** Simple default robot speed used to determine the guess XY (adjust as necessary). */
+  /** Simple default robot speed (full duty cycle) used by the default odometry
+   * speed curve (adjust as necessary). */
   public static final double DEFAULT_SPEED_FT_PER_SEC = 3.3;
 
+  /** Dead reckoning from the wheel duty cycles, advanced every loop. Calibrate
+   * it with setSpeedCurve and setTrackWidthFt. Control thread only. */
+  protected final DriveOdometry mOdometry = new DriveOdometry();
+
+  /** How quickly the odometry heading follows the sensor heading. The wheels
+   * give the turn rate over shorter times than this. */
+  public static final double HEADING_CORRECTION_TIME_SEC = 0.5;
+
+  /** System.nanoTime() of the last odometry update. Control thread only. */
+  private long mLastOdometryNs;
+
   /** Current wheel duty cycle. Note always use sendWheelSpeed for robot commands. */
-  protected int mLeftDutyCycle, mRightDutyCycle;
+  protected volatile int mLeftDutyCycle, mRightDutyCycle;
+
+  /** Capture time (System.nanoTime()) of the sensor data the next wheel command
+   * reacts to, or 0 when it isn't traced. Passed along to sendCommand. */
+  protected long mWheelCommandTraceNs = 0;
+
+  /** The FSM calls sendWheelSpeed every loop (and on every vision result), so
+   * a command equal to the last one written is skipped unless it is older than
+   * this. The refresh covers a lost write or a reset Arduino. */
+  public static final int WHEEL_COMMAND_REFRESH_MS = 500;
+
+  /** Duty cycles and time (System.nanoTime()) of the last wheel command
+   * written. Only used on the control thread. */
+  private int mSentLeftDutyCycle = Integer.MIN_VALUE, mSentRightDutyCycle = Integer.MIN_VALUE;
+  private long mSentWheelCommandNs;
 
   /** Simple constants used to define the magic communication words for wheel modes. */
-  public static final String WHEEL_MODE_REVERSE = "REVERSE";
-  public static final String WHEEL_MODE_BRAKE = "BRAKE";
-  public static final String WHEEL_MODE_FORWARD = "FORWARD";
+  public static final String WHEEL_MODE_REVERSE = WheelSpeedCommand.MODE_REVERSE;
+  public static final String WHEEL_MODE_BRAKE = WheelSpeedCommand.MODE_BRAKE;
+  public static final String WHEEL_MODE_FORWARD = WheelSpeedCommand.MODE_FORWARD;
 
   // Timing
-  /** Timer used to magically call the loop function. */
-  protected Timer mTimer;
+  /** High priority thread that calls the loop function. */
+  protected ControlLoop mControlLoop;
+
+  /** Default interval that sets how often the loop function is called (50 Hz). */
+  public static final int DEFAULT_LOOP_INTERVAL_MS = 20;
+
+  /** Interval that sets how often the loop function is called, see setLoopIntervalMs. */
+  protected volatile int mLoopIntervalMs = DEFAULT_LOOP_INTERVAL_MS;
+
+  /** Interval that sets how often updateUi is posted to the UI thread. */
+  public static final int UI_INTERVAL_MS = 200;
 
-  /** Interval that sets how often the loop function is called. */
-  public static final int LOOP_INTERVAL_MS = 100;
+  /** Runs slower consumers at their own rates, ticked by the control loop. */
+  protected final LoopDecimator mLoopDecimator = new LoopDecimator();
+
+  /** Period, execution time, lateness and overrun histograms for the loop,
+   * split by getLoopPhase. */
+  protected LoopTimings mLoopTimings;
+  private static final String LOOP_TIMINGS_FILE = "loop_timings.txt";
+
+  /** Magic tool we use to execute code after a delay (on the control thread). */
+  protected Handler mCommandHandler;
 
-  /** Magic tool we use to execute code after a delay. */
-  protected Handler mCommandHandler = new Handler();
 
   // Field GPS locations
   /** Latitude and Longitude values of the field home bases. */
@@ -133,19 +187,114 @@ public class RobotActivity extends AccessoryActivity implements FieldGpsListener
   public static final double BLUE_HOME_LATITUDE = 39.485549; // Middle of the end zone near the tennis courts
   public static final double BLUE_HOME_LONGITUDE = -87.324796;
   
-  /** Function called 10 times per second. */
+  /** Function called every mLoopIntervalMs (50 times per second by default) on
+   * the control thread. Don't touch Views here, use updateUi. */
   public void loop() {
-    if (mMovingForward) {
-      mGuessX += DEFAULT_SPEED_FT_PER_SEC * (double) LOOP_INTERVAL_MS / 1000.0 * Math.cos(Math.toRadians(mCurrentSensorHeading));
-      mGuessY += DEFAULT_SPEED_FT_PER_SEC * (double) LOOP_INTERVAL_MS / 1000.0 * Math.sin(Math.toRadians(mCurrentSensorHeading));
+    long nowNs = System.nanoTime();
+    if (mControlLoop.getTicksSinceStart() == 0) {
+      // Nothing to integrate across a stop, start from the sensor heading.
+      mLastOdometryNs = nowNs;
+      mOdometry.setHeading(mCurrentSensorHeading);
     }
+    // The real time since the last loop, which is longer after a skipped tick.
+    double dtSeconds = (nowNs - mLastOdometryNs) / 1e9;
+    mLastOdometryNs = nowNs;
+    mOdometry.update(mLeftDutyCycle, mRightDutyCycle, dtSeconds);
+    mOdometry.correctHeading(mCurrentSensorHeading, dtSeconds / (HEADING_CORRECTION_TIME_SEC + dtSeconds));
+    mGuessX = mOdometry.getX();
+    mGuessY = mOdometry.getY();
+    mGuessHeading = mOdometry.getHeading();
     // Do more in subclass.
   };
 
+  /** Function called every UI_INTERVAL_MS on the UI thread to refresh the
+   * display, however fast the loop runs. Skipped (not queued up) while the UI
+   * thread is busy. */
+  protected void updateUi() {
+    // Do more in subclass.
+  }
+
+  /** Called on the control thread as soon as a GPS reading arrives (after the
+   * mCurrentGps fields are set), so a subclass can react without waiting for
+   * the next loop. */
+  protected void onGpsUpdate() {
+    // Do more in subclass.
+  }
+
+  /** Runs the action on the control thread, right away if already on it.
+   * Counterpart of runOnUiThread for anything that touches the FSM. */
+  public void runOnControlThread(Runnable action) {
+    if (mControlLoop.isControlThread()) {
+      action.run();
+    } else {
+      mCommandHandler.post(action);
+    }
+  }
+
+  /** Handler on the control thread, for helpers outside this class (like
+   * scripts) that post delayed wheel commands. */
+  public Handler getCommandHandler() {
+    return mCommandHandler;
+  }
+
+  /** Index of the loop phase (like the FSM state) used to split up the loop
+   * timings. Called on the control thread at the start of each tick. */
+  protected int getLoopPhase() {
+    return 0;
+  }
+
+  /** Names for every value getLoopPhase can return. */
+  protected String[] getLoopPhaseNames() {
+    return new String[] {"loop"};
+  }
+
+  /** Logs the loop timing summary and writes the full histograms to the app's
+   * external files directory. */
+  public void dumpLoopTimings() {
+    Log.d(TAG, "Loop timings (" + mControlLoop.getSkippedTickCount() + " ticks skipped):\n" + mLoopTimings.summary());
+    File file = new File(getExternalFilesDir(null), LOOP_TIMINGS_FILE);
+    try {
+      mLoopTimings.dump(file);
+      Log.d(TAG, "Loop timings written to " + file.getAbsolutePath());
+    } catch (IOException e) {
+      Log.e(TAG, "Unable to write the loop timings", e);
+    }
+  }
+
+  /** Changes how often loop is called. Takes effect from the next tick. */
+  public void setLoopIntervalMs(int intervalMs) {
+    mLoopIntervalMs = intervalMs;
+    mLoopTimings.setIntervalMs(intervalMs);
+    mControlLoop.setIntervalMs(intervalMs);
+  }
+
+  private void onControlTick() {
+    long startNs = System.nanoTime();
+    int phase = getLoopPhase();
+    if (mControlLoop.getTicksSinceStart() == 0) {
+      mLoopTimings.restart();
+    }
+    loop();
+    mLoopDecimator.tick(System.nanoTime());
+    mLoopTimings.record(phase, mControlLoop.getTickDeadlineNs(), startNs, System.nanoTime());
+  }
+
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
+    mControlLoop = new ControlLoop("ControlLoop", new Runnable() {
+      public void run() {
+        onControlTick();
+      }
+    });
+    mCommandHandler = mControlLoop.getHandler();
+    mLoopTimings = new LoopTimings(getLoopPhaseNames(), mLoopIntervalMs);
+    mLoopDecimator.subscribe(UI_INTERVAL_MS, true, new Runnable() {
+      public void run() {
+        updateUi();
+      }
+    });
 
     // Assume you are on the red team to start the app (can be changed later).
     mFieldGps = new FieldGps(this, RED_HOME_LATITUDE, RED_HOME_LONGITUDE, BLUE_HOME_LATITUDE, BLUE_HOME_LONGITUDE);
@@ -178,14 +327,27 @@ public class RobotActivity extends AccessoryActivity implements FieldGpsListener
   }
 
   @Override
-  public void onLocationChanged(double x, double y, double heading,
+  public void onLocationChanged(final double x, final double y, final double heading,
       Location location) {
     mGpsCounter++;
+    final boolean hasHeading = heading < 180.0 && heading > -180.0;
     mCurrentGpsX = x;
     mCurrentGpsY = y;
-    mCurrentGpsHeading = NO_HEADING;
-    mGuessX = mCurrentGpsX;
-    mGuessY = mCurrentGpsY;
+    mCurrentGpsHeading = hasHeading ? heading : NO_HEADING;
+    // The guess is advanced by the control thread, so reset it there too. The
+    // sensor heading keeps pulling it back afterwards (see loop).
+    runOnControlThread(new Runnable() {
+      public void run() {
+        mOdometry.setPosition(x, y);
+        if (hasHeading) {
+          mOdometry.setHeading(heading);
+        }
+        mGuessX = x;
+        mGuessY = y;
+        mGuessHeading = mOdometry.getHeading();
+        onGpsUpdate();
+      }
+    });
 
     mCurrentGpsDistance = NavUtils.getDistance(mCurrentGpsX, mCurrentGpsY, 0, 0); // TODO: Update this code to allow for targets other than 0, 0
     int lastGpsReadingIndex = mSavedGpsDistances.size() - 1;
@@ -207,8 +369,7 @@ public class RobotActivity extends AccessoryActivity implements FieldGpsListener
     }
 
     // If the vehicle is currently going straight and heading is present.
-    if (heading < 180.0 && heading > -180.0) {
-      mCurrentGpsHeading = heading;
+    if (hasHeading) {
       if (mMovingStraight) {
         mFieldOrientation.setCurrentFieldHeading(mCurrentGpsHeading);
         if (mTalkingGps && (System.currentTimeMillis() - mLastTalkTime > 3000)) {
@@ -262,17 +423,7 @@ public class RobotActivity extends AccessoryActivity implements FieldGpsListener
   @Override
   protected void onStart() {
     super.onStart();
-    mTimer = new Timer();
-    mTimer.scheduleAtFixedRate(new TimerTask() {
-      @Override
-      public void run() {
-        runOnUiThread(new Runnable() {
-          public void run() {
-            loop();
-          }
-        });
-      }
-    }, 0, LOOP_INTERVAL_MS);
+    mControlLoop.start(mLoopIntervalMs);
     mFieldOrientation.registerListener(this);
     mFieldGps.requestLocationUpdates(this, 1000, 0);
   }
@@ -281,12 +432,17 @@ public class RobotActivity extends AccessoryActivity implements FieldGpsListener
   protected void onStop() {
     super.onStop();
     mTts.shutdown();
-    mTimer.cancel();
-    mTimer = null;
+    mControlLoop.stop();
     mFieldOrientation.unregisterListener();
     mFieldGps.removeUpdates();
   }
 
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    mControlLoop.quit();
+  }
+
   /**
    * ALWAYS use this method when sending a wheel speed command. It tracks the
    * latest command sent and keeps track of when the robot is going straight
@@ -298,28 +454,30 @@ public class RobotActivity extends AccessoryActivity implements FieldGpsListener
   public void sendWheelSpeed(int leftDutyCycle, int rightDutyCycle) {
     mLeftDutyCycle = leftDutyCycle;
     mRightDutyCycle = rightDutyCycle;
-    // The member variable has a sign, parameter (FORWARD, BRAKE, REVERSE) used
-    // for communication.
-    leftDutyCycle = Math.abs(leftDutyCycle);
-    rightDutyCycle = Math.abs(rightDutyCycle);
-    String leftMode = WHEEL_MODE_BRAKE;
-    String rightMode = WHEEL_MODE_BRAKE;
-    if (mLeftDutyCycle < 0) {
-      leftMode = WHEEL_MODE_REVERSE;
-    } else if (mLeftDutyCycle > 0) {
-      leftMode = WHEEL_MODE_FORWARD;
-    }
-    if (mRightDutyCycle < 0) {
-      rightMode = WHEEL_MODE_REVERSE;
-    } else if (mRightDutyCycle > 0) {
-      rightMode = WHEEL_MODE_FORWARD;
-    }
     // Set member variables to track movement type.
     mMovingForward = mLeftDutyCycle > 30 && mRightDutyCycle > 30;
     mMovingStraight = mLeftDutyCycle > 100 && mRightDutyCycle > 100;
-    String command = "WHEEL SPEED " + leftMode + " " + leftDutyCycle + " " +
-        rightMode + " " + rightDutyCycle;
-    sendCommand(command);
+    if (!isWheelCommandDue(leftDutyCycle, rightDutyCycle)) {
+      // Already driving at these duty cycles, don't queue another USB write.
+      mWheelCommandTraceNs = 0;
+      return;
+    }
+    mSentLeftDutyCycle = leftDutyCycle;
+    mSentRightDutyCycle = rightDutyCycle;
+    mSentWheelCommandNs = System.nanoTime();
+    // The member variable has a sign, the command uses (FORWARD, BRAKE, REVERSE)
+    // and the magnitude.
+    String command = WheelSpeedCommand.build(leftDutyCycle, rightDutyCycle);
+    sendCommand(command, mWheelCommandTraceNs);
+    mWheelCommandTraceNs = 0;
+  }
+
+  /** True if sendWheelSpeed with these duty cycles would write a command: they
+   * differ from the last ones written, or that write is older than
+   * WHEEL_COMMAND_REFRESH_MS. */
+  protected boolean isWheelCommandDue(int leftDutyCycle, int rightDutyCycle) {
+    return leftDutyCycle != mSentLeftDutyCycle || rightDutyCycle != mSentRightDutyCycle
+        || System.nanoTime() - mSentWheelCommandNs >= WHEEL_COMMAND_REFRESH_MS * 1000000L;
   }
 
   // --------------- Audio Out for debugging -----------------------------
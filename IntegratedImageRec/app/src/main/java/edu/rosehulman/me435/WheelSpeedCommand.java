@@ -0,0 +1,33 @@
+package edu.rosehulman.me435;
+
+/**
+ * Builds the "WHEEL SPEED" command strings sent to the Arduino. Kept free of
+ * Android dependencies so the formatting can be benchmarked on a plain JVM.
+ */
+public class WheelSpeedCommand {
+
+  /** Magic communication words for wheel modes. */
+  public static final String MODE_REVERSE = "REVERSE";
+  public static final String MODE_BRAKE = "BRAKE";
+  public static final String MODE_FORWARD = "FORWARD";
+
+  /**
+   * @param leftDutyCycle -255 to 255, negative values use the REVERSE mode.
+   * @param rightDutyCycle -255 to 255, negative values use the REVERSE mode.
+   * @return The command, for example "WHEEL SPEED FORWARD 100 REVERSE 50".
+   */
+  public static String build(int leftDutyCycle, int rightDutyCycle) {
+    return "WHEEL SPEED " + getMode(leftDutyCycle) + " " + Math.abs(leftDutyCycle) + " " +
+        getMode(rightDutyCycle) + " " + Math.abs(rightDutyCycle);
+  }
+
+  /** Mode word for a signed duty cycle (BRAKE for 0). */
+  public static String getMode(int dutyCycle) {
+    if (dutyCycle < 0) {
+      return MODE_REVERSE;
+    } else if (dutyCycle > 0) {
+      return MODE_FORWARD;
+    }
+    return MODE_BRAKE;
+  }
+}
@@ -0,0 +1,281 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class BlobLabelerTest {
+    private static final double EPSILON = 1e-9;
+
+    private final BlobLabeler mLabeler = new BlobLabeler();
+
+    /**
+     * Mask from rows of '#' (set) and '.' (clear).
+     */
+    private static byte[] mask(String... rows) {
+        byte[] mask = new byte[rows.length * rows[0].length()];
+        for (int y = 0; y < rows.length; y++) {
+            for (int x = 0; x < rows[y].length(); x++) {
+                mask[y * rows[0].length() + x] = rows[y].charAt(x) == '#' ? (byte) 255 : 0;
+            }
+        }
+        return mask;
+    }
+
+    private List<Blob> label(String... rows) {
+        mLabeler.label(mask(rows), rows[0].length(), rows.length, 1, 0);
+        return mLabeler.getBlobs();
+    }
+
+    @Test
+    public void singlePixel() {
+        List<Blob> blobs = label(
+                "....",
+                "..#.",
+                "....");
+        assertEquals(1, blobs.size());
+        Blob blob = blobs.get(0);
+        assertEquals(1, blob.getArea(), EPSILON);
+        assertEquals(2, blob.getCenterX(), EPSILON);
+        assertEquals(1, blob.getCenterY(), EPSILON);
+        assertEquals(2, blob.getLeft());
+        assertEquals(1, blob.getTop());
+        assertEquals(1, blob.getWidth());
+        assertEquals(1, blob.getHeight());
+        assertEquals(0, blob.getVarianceX(), EPSILON);
+        assertEquals(0, blob.getCovarianceXY(), EPSILON);
+        assertEquals(0, blob.getVarianceY(), EPSILON);
+    }
+
+    @Test
+    public void fullFrame() {
+        List<Blob> blobs = label(
+                "###",
+                "###");
+        assertEquals(1, blobs.size());
+        Blob blob = blobs.get(0);
+        assertEquals(6, blob.getArea(), EPSILON);
+        assertEquals(1, blob.getCenterX(), EPSILON);
+        assertEquals(0.5, blob.getCenterY(), EPSILON);
+        assertEquals(0, blob.getLeft());
+        assertEquals(0, blob.getTop());
+        assertEquals(3, blob.getWidth());
+        assertEquals(2, blob.getHeight());
+        // x in {0, 1, 2}: variance 2/3. y in {0, 1}: variance 1/4. Independent, so no covariance.
+        assertEquals(2.0 / 3.0, blob.getVarianceX(), EPSILON);
+        assertEquals(0, blob.getCovarianceXY(), EPSILON);
+        assertEquals(0.25, blob.getVarianceY(), EPSILON);
+    }
+
+    @Test
+    public void uShapeJoinsItsArms() {
+        // The two arms get separate labels and only meet on the last row, so the later label has to
+        // be merged into the earlier one.
+        List<Blob> blobs = label(
+                "#..#",
+                "#..#",
+                "####");
+        assertEquals(1, blobs.size());
+        Blob blob = blobs.get(0);
+        // Pixels: (0,0) (3,0) (0,1) (3,1) (0,2) (1,2) (2,2) (3,2).
+        assertEquals(8, blob.getArea(), EPSILON);
+        assertEquals(12.0 / 8, blob.getCenterX(), EPSILON);
+        assertEquals(10.0 / 8, blob.getCenterY(), EPSILON);
+        assertEquals(0, blob.getLeft());
+        assertEquals(0, blob.getTop());
+        assertEquals(4, blob.getWidth());
+        assertEquals(3, blob.getHeight());
+        // Sum x^2 = 32, sum xy = 15, sum y^2 = 18. Symmetric about x = 1.5, so no covariance.
+        assertEquals(32.0 / 8 - 1.5 * 1.5, blob.getVarianceX(), EPSILON);
+        assertEquals(0, blob.getCovarianceXY(), EPSILON);
+        assertEquals(18.0 / 8 - 1.25 * 1.25, blob.getVarianceY(), EPSILON);
+    }
+
+    @Test
+    public void mergedLabelsFoldIntoTheOldestRoot() {
+        // Three arms joined by the bottom row, the last one through a second union.
+        List<Blob> blobs = label(
+                "#.#.#",
+                "#.#.#",
+                "#####");
+        assertEquals(1, blobs.size());
+        Blob blob = blobs.get(0);
+        assertEquals(11, blob.getArea(), EPSILON);
+        // Arms at x = 0, 2, 4 on rows 0 and 1, then x = 0 to 4 on row 2.
+        // Sum x = 6 + 6 + 10 = 22, sum y = 0 * 3 + 1 * 3 + 2 * 5 = 13.
+        assertEquals(22.0 / 11, blob.getCenterX(), EPSILON);
+        assertEquals(13.0 / 11, blob.getCenterY(), EPSILON);
+        assertEquals(5, blob.getWidth());
+        assertEquals(3, blob.getHeight());
+    }
+
+    @Test
+    public void diagonalNeighborsAreConnected() {
+        List<Blob> blobs = label(
+                "#...",
+                ".#..",
+                "..#.",
+                "...#");
+        assertEquals(1, blobs.size());
+        Blob blob = blobs.get(0);
+        assertEquals(4, blob.getArea(), EPSILON);
+        assertEquals(1.5, blob.getCenterX(), EPSILON);
+        assertEquals(1.5, blob.getCenterY(), EPSILON);
+        assertEquals(4, blob.getWidth());
+        assertEquals(4, blob.getHeight());
+        // x = y for every pixel, so both variances and the covariance are those of {0, 1, 2, 3}.
+        assertEquals(1.25, blob.getVarianceX(), EPSILON);
+        assertEquals(1.25, blob.getCovarianceXY(), EPSILON);
+        assertEquals(1.25, blob.getVarianceY(), EPSILON);
+    }
+
+    @Test
+    public void antiDiagonalJoinsTwoEarlierLabels() {
+        // The run on row 1 touches both row 0 pixels through diagonals only.
+        List<Blob> blobs = label(
+                "#.#",
+                ".#.");
+        assertEquals(1, blobs.size());
+        Blob blob = blobs.get(0);
+        assertEquals(3, blob.getArea(), EPSILON);
+        assertEquals(1, blob.getCenterX(), EPSILON);
+        assertEquals(1.0 / 3, blob.getCenterY(), EPSILON);
+        // Pixels (0,0) (2,0) (1,1): mean (1, 1/3), sum x^2 = 5, sum xy = 1, sum y^2 = 1.
+        assertEquals(5.0 / 3 - 1, blob.getVarianceX(), EPSILON);
+        assertEquals(0, blob.getCovarianceXY(), EPSILON);
+        assertEquals(1.0 / 3 - 1.0 / 9, blob.getVarianceY(), EPSILON);
+    }
+
+    @Test
+    public void separateBlobsAndAreaFilter() {
+        String[] rows = {
+                "##...#",
+                "##....",
+                "......"};
+        List<Blob> blobs = label(rows);
+        assertEquals(2, blobs.size());
+        // The single pixel is a quarter of the largest blob, so a 0.5 filter drops it.
+        mLabeler.label(mask(rows), rows[0].length(), rows.length, 1, 0.5);
+        assertEquals(1, mLabeler.getBlobs().size());
+        assertEquals(4, mLabeler.getBlobs().get(0).getArea(), EPSILON);
+    }
+
+    @Test
+    public void scaleAndOffsetApplyToEveryMeasure() {
+        mLabeler.label(mask(
+                "...",
+                ".##"), 3, 2, 4, 0, 10, 20);
+        Blob blob = mLabeler.getBlobs().get(0);
+        assertEquals(2 * 16, blob.getArea(), EPSILON);
+        assertEquals((1.5 + 10) * 4, blob.getCenterX(), EPSILON);
+        assertEquals((1 + 20) * 4, blob.getCenterY(), EPSILON);
+        assertEquals((1 + 10) * 4, blob.getLeft());
+        assertEquals((1 + 20) * 4, blob.getTop());
+        assertEquals(5, blob.getWidth());
+        assertEquals(1, blob.getHeight());
+        assertEquals(0.25 * 16, blob.getVarianceX(), EPSILON);
+    }
+
+    @Test
+    public void emptyMaskAfterBlobs() {
+        label("#.", "..");
+        assertEquals(0, label("..", "..").size());
+    }
+
+    /**
+     * Mask of one target's bit from a labelBits mask.
+     */
+    private static byte[] targetMask(int[] bits, int target) {
+        byte[] mask = new byte[bits.length];
+        for (int i = 0; i < bits.length; i++) {
+            mask[i] = (bits[i] & (1 << target)) != 0 ? (byte) 255 : 0;
+        }
+        return mask;
+    }
+
+    private static void assertSameBlob(String message, Blob expected, Blob actual) {
+        assertEquals(message + " area", expected.getArea(), actual.getArea(), EPSILON);
+        assertEquals(message + " center x", expected.getCenterX(), actual.getCenterX(), EPSILON);
+        assertEquals(message + " center y", expected.getCenterY(), actual.getCenterY(), EPSILON);
+        assertEquals(message + " left", expected.getLeft(), actual.getLeft());
+        assertEquals(message + " top", expected.getTop(), actual.getTop());
+        assertEquals(message + " width", expected.getWidth(), actual.getWidth());
+        assertEquals(message + " height", expected.getHeight(), actual.getHeight());
+        assertEquals(message + " variance x", expected.getVarianceX(), actual.getVarianceX(), 1e-6);
+        assertEquals(message + " covariance", expected.getCovarianceXY(), actual.getCovarianceXY(), 1e-6);
+        assertEquals(message + " variance y", expected.getVarianceY(), actual.getVarianceY(), 1e-6);
+    }
+
+    @Test
+    public void labelBitsMatchesLabelingEachTarget() {
+        int width = 41;
+        int height = 29;
+        int targets = 6;
+        Random random = new Random(435);
+        int[] bits = new int[width * height];
+        for (int i = 0; i < bits.length; i++) {
+            for (int k = 0; k < targets; k++) {
+                // Denser targets make bigger, more tangled blobs. Targets overlap freely.
+                if (random.nextDouble() < 0.1 * (k + 1)) {
+                    bits[i] |= 1 << k;
+                }
+            }
+        }
+        BlobLabeler single = new BlobLabeler();
+        mLabeler.labelBits(bits, width, height, targets, 2, 0.05);
+        for (int k = 0; k < targets; k++) {
+            single.label(targetMask(bits, k), width, height, 2, 0.05);
+            List<Blob> expected = single.getBlobs();
+            List<Blob> actual = mLabeler.getBlobs(k);
+            assertEquals("target " + k + " blobs", expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertSameBlob("target " + k + " blob " + i, expected.get(i), actual.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void labelBitsKeepsTargetsApart() {
+        // Target 0 is the left block, target 1 the right block, and the middle column is both.
+        int[] bits = {
+                1, 1, 3, 2, 0,
+                1, 1, 3, 2, 0,
+                0, 0, 0, 0, 0};
+        mLabeler.labelBits(bits, 5, 3, 3, 1, 0);
+        assertEquals(1, mLabeler.getBlobs(0).size());
+        assertEquals(6, mLabeler.getBlobs(0).get(0).getArea(), EPSILON);
+        assertEquals(1, mLabeler.getBlobs(0).get(0).getCenterX(), EPSILON);
+        assertEquals(1, mLabeler.getBlobs(1).size());
+        assertEquals(4, mLabeler.getBlobs(1).get(0).getArea(), EPSILON);
+        assertEquals(2.5, mLabeler.getBlobs(1).get(0).getCenterX(), EPSILON);
+        assertEquals(0, mLabeler.getBlobs(2).size());
+
+        // Nothing is carried over into the next frame.
+        mLabeler.labelBits(new int[15], 5, 3, 3, 1, 0);
+        assertEquals(0, mLabeler.getBlobs(0).size());
+        assertEquals(0, mLabeler.getBlobs(1).size());
+    }
+
+    @Test
+    public void dilateBitsMatchesDilatingEachTarget() {
+        int width = 17;
+        int height = 11;
+        Random random = new Random(7);
+        int[] bits = new int[width * height];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = random.nextInt(16) == 0 ? 1 << random.nextInt(4) : 0;
+        }
+        int[] dilatedBits = new int[bits.length];
+        BlobLabeler.dilateBits(bits, dilatedBits, width, height);
+        byte[] dilated = new byte[bits.length];
+        for (int k = 0; k < 4; k++) {
+            BlobLabeler.dilate(targetMask(bits, k), dilated, width, height, 0, height);
+            for (int i = 0; i < bits.length; i++) {
+                assertEquals("target " + k + " pixel " + i, dilated[i] != 0, (dilatedBits[i] & (1 << k)) != 0);
+            }
+        }
+    }
+}
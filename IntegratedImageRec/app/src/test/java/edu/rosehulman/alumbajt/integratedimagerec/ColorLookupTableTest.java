@@ -0,0 +1,93 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Sweeps every 8 bit RGB color through the RGB lookup table and through rgbToHsvFull plus the HSV
+ * range check (what ColorBlobDetector does with cvtColor and inRange), with bounds built the same
+ * way as ColorBlobDetector.setHsvColor.
+ *
+ * Measured at the 32 level quantization:
+ * <pre>
+ *     target         radius       in range   mismatches   of all   of in range
+ *     (10,255,255)   (25,50,50)    412577       45217     0.27%       11.0%
+ *     (10,200,200)   (25,50,50)   1080893      176179     1.05%       16.3%
+ *     (170,180,150)  (20,70,70)   1278308      198492     1.18%       15.5%
+ * </pre>
+ * Every mismatch is in a bin the range boundary cuts through, so the table is only ever off by the
+ * quantization step.
+ */
+public class ColorLookupTableTest {
+    private static final int BINS = 32 * 32 * 32;
+
+    private static void checkAgainstHsv(double[] target, double[] radius, double maxOfAll, double maxOfInRange) {
+        double[] lower = {
+                target[0] >= radius[0] ? target[0] - radius[0] : 0,
+                target[1] - radius[1],
+                target[2] - radius[2]};
+        double[] upper = {
+                target[0] + radius[0] <= 255 ? target[0] + radius[0] : 255,
+                target[1] + radius[1],
+                target[2] + radius[2]};
+        ColorLookupTable table = new ColorLookupTable(ColorLookupTable.SPACE_RGB);
+        table.build(lower, upper);
+
+        boolean[] binHasIn = new boolean[BINS];
+        boolean[] binHasOut = new boolean[BINS];
+        boolean[] binHasMismatch = new boolean[BINS];
+        int[] hsv = new int[3];
+        long inRange = 0;
+        long mismatches = 0;
+        for (int r = 0; r < 256; r++) {
+            for (int g = 0; g < 256; g++) {
+                for (int b = 0; b < 256; b++) {
+                    ColorLookupTable.rgbToHsvFull(r, g, b, hsv);
+                    boolean expected = hsv[0] >= lower[0] && hsv[0] <= upper[0]
+                            && hsv[1] >= lower[1] && hsv[1] <= upper[1]
+                            && hsv[2] >= lower[2] && hsv[2] <= upper[2];
+                    int bin = ((r >>> 3) << 10) | ((g >>> 3) << 5) | (b >>> 3);
+                    if (expected) {
+                        inRange++;
+                        binHasIn[bin] = true;
+                    } else {
+                        binHasOut[bin] = true;
+                    }
+                    if (table.contains(r, g, b) != expected) {
+                        mismatches++;
+                        binHasMismatch[bin] = true;
+                    }
+                }
+            }
+        }
+
+        for (int bin = 0; bin < BINS; bin++) {
+            if (binHasMismatch[bin]) {
+                assertTrue("mismatch in bin " + bin + " that is all on one side of the range",
+                        binHasIn[bin] && binHasOut[bin]);
+            }
+        }
+        assertFalse("target matches nothing", inRange == 0);
+        double ofAll = (double) mismatches / (1 << 24);
+        double ofInRange = (double) mismatches / inRange;
+        assertTrue("mismatch rate " + ofAll + " of all colors", ofAll <= maxOfAll);
+        assertTrue("mismatch rate " + ofInRange + " of in range colors", ofInRange <= maxOfInRange);
+    }
+
+    @Test
+    public void defaultConeTarget() {
+        checkAgainstHsv(new double[] {10, 255, 255}, new double[] {25, 50, 50}, 0.003, 0.12);
+    }
+
+    @Test
+    public void lessSaturatedTarget() {
+        checkAgainstHsv(new double[] {10, 200, 200}, new double[] {25, 50, 50}, 0.011, 0.17);
+    }
+
+    @Test
+    public void wideRangeTarget() {
+        checkAgainstHsv(new double[] {170, 180, 150}, new double[] {20, 70, 70}, 0.012, 0.16);
+    }
+}
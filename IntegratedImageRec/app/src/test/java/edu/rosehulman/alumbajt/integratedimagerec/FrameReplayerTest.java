@@ -0,0 +1,124 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameReplayerTest {
+    private static final int WIDTH = 4;
+    private static final int HEIGHT = 2;
+    private static final int FRAME_BYTES = WIDTH * HEIGHT * 3 / 2;
+    private static final int RECORD_BYTES = FrameRecorder.FRAME_HEADER_BYTES + FRAME_BYTES;
+    // Smaller than two records and not a multiple of one, so frames straddle the window edges.
+    private static final int SEGMENT_BYTES = 40;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("frames", ".nv21");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    /**
+     * Writes the header and frameCount frames laid out like FrameRecorder, frame i filled with i.
+     */
+    private void write(int frameCount, int frameLength, int extraBytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(FrameRecorder.FILE_HEADER_BYTES
+                + frameCount * (FrameRecorder.FRAME_HEADER_BYTES + frameLength) + extraBytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(FrameRecorder.MAGIC).putInt(FrameRecorder.VERSION).putInt(WIDTH).putInt(HEIGHT);
+        for (int i = 0; i < frameCount; i++) {
+            buffer.putLong(1000L * i).putInt(frameLength);
+            for (int j = 0; j < frameLength; j++) {
+                buffer.put((byte) i);
+            }
+        }
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.write(buffer.array());
+        file.close();
+    }
+
+    private static void assertFrame(FrameReplayer replayer, int index) throws IOException {
+        assertTrue("frame " + index, replayer.next());
+        assertEquals(1000L * index, replayer.getLastCaptureTimeNs());
+        byte[] expected = new byte[FRAME_BYTES];
+        Arrays.fill(expected, (byte) index);
+        assertArrayEquals(expected, replayer.getLastFrame());
+    }
+
+    @Test
+    public void readsEveryFrameAcrossWindows() throws IOException {
+        write(10, FRAME_BYTES, 0);
+        FrameReplayer replayer = new FrameReplayer(mFile, SEGMENT_BYTES);
+        assertEquals(WIDTH, replayer.getWidth());
+        assertEquals(HEIGHT, replayer.getHeight());
+        for (int i = 0; i < 10; i++) {
+            assertFrame(replayer, i);
+        }
+        assertFalse(replayer.next());
+
+        replayer.rewind();
+        assertFrame(replayer, 0);
+        replayer.close();
+    }
+
+    @Test
+    public void unclosedRecordingEndsAtTheZeroFill() throws IOException {
+        write(3, FRAME_BYTES, 2 * RECORD_BYTES);
+        FrameReplayer replayer = new FrameReplayer(mFile, SEGMENT_BYTES);
+        for (int i = 0; i < 3; i++) {
+            assertFrame(replayer, i);
+        }
+        assertFalse(replayer.next());
+        replayer.close();
+    }
+
+    @Test
+    public void frameCutOffAtTheEndIsDropped() throws IOException {
+        write(3, FRAME_BYTES, 0);
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.setLength(file.length() - 1);
+        file.close();
+        FrameReplayer replayer = new FrameReplayer(mFile, SEGMENT_BYTES);
+        assertFrame(replayer, 0);
+        assertFrame(replayer, 1);
+        assertFalse(replayer.next());
+        replayer.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void wrongFrameLengthIsReported() throws IOException {
+        write(2, FRAME_BYTES + 1, 0);
+        FrameReplayer replayer = new FrameReplayer(mFile, SEGMENT_BYTES);
+        try {
+            replayer.next();
+        } finally {
+            replayer.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void notARecording() throws IOException {
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        file.write(new byte[64]);
+        file.close();
+        new FrameReplayer(mFile, SEGMENT_BYTES);
+    }
+}
@@ -0,0 +1,136 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencv.core.Scalar;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JavaBlobDetectorTest {
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    private byte[] mFrame;
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        // Red 80x40 block on a green background.
+        mFrame = new byte[WIDTH * HEIGHT * 4];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int p = (y * WIDTH + x) * 4;
+                boolean inside = x >= 120 && x < 200 && y >= 100 && y < 140;
+                mFrame[p] = (byte) (inside ? 255 : 0);
+                mFrame[p + 1] = (byte) (inside ? 0 : 160);
+                mFrame[p + 2] = 0;
+                mFrame[p + 3] = (byte) 255;
+            }
+        }
+        mExecutor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    private static JavaBlobDetector redDetector(JavaBlobDetector detector) {
+        detector.setColorRadius(new Scalar(25, 50, 50, 0));
+        detector.setHsvColor(new Scalar(0, 255, 255));
+        return detector;
+    }
+
+    @Test
+    public void findsTheBlock() {
+        JavaBlobDetector detector = redDetector(new JavaBlobDetector(1));
+        assertTrue(detector.process(mFrame, WIDTH, HEIGHT));
+        List<Blob> blobs = detector.getBlobs();
+        assertEquals(1, blobs.size());
+        assertEquals(160, blobs.get(0).getCenterX(), 4);
+        assertEquals(120, blobs.get(0).getCenterY(), 4);
+    }
+
+    @Test
+    public void parallelBandsMatchOneThread() {
+        JavaBlobDetector serial = redDetector(new JavaBlobDetector(1));
+        JavaBlobDetector parallel = redDetector(new JavaBlobDetector(mExecutor, 4));
+        assertTrue(serial.process(mFrame, WIDTH, HEIGHT));
+        assertTrue(parallel.process(mFrame, WIDTH, HEIGHT));
+        Blob expected = serial.getBlobs().get(0);
+        Blob actual = parallel.getBlobs().get(0);
+        assertEquals(1, parallel.getBlobs().size());
+        assertEquals(expected.getArea(), actual.getArea(), 0);
+        assertEquals(expected.getCenterX(), actual.getCenterX(), 0);
+        assertEquals(expected.getCenterY(), actual.getCenterY(), 0);
+    }
+
+    @Test
+    public void interruptedFrameIsDropped() throws Exception {
+        JavaBlobDetector detector = redDetector(new JavaBlobDetector(mExecutor, 2));
+        assertTrue(detector.process(mFrame, WIDTH, HEIGHT));
+        assertEquals(1, detector.getBlobs().size());
+
+        // Keep both pool threads busy so no band can finish before the interrupt is noticed.
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(detector.process(mFrame, WIDTH, HEIGHT));
+            assertTrue(detector.getBlobs().isEmpty());
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void frameAfterAnInterruptIsComplete() throws Exception {
+        JavaBlobDetector detector = redDetector(new JavaBlobDetector(mExecutor, 2));
+        // Block one pool thread, so one band of the interrupted frame runs and the other never does.
+        final CountDownLatch release = new CountDownLatch(1);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(detector.process(mFrame, WIDTH, HEIGHT));
+        } finally {
+            Thread.interrupted();
+            release.countDown();
+        }
+
+        assertTrue(detector.process(mFrame, WIDTH, HEIGHT));
+        List<Blob> blobs = detector.getBlobs();
+        assertEquals(1, blobs.size());
+        assertEquals(160, blobs.get(0).getCenterX(), 4);
+        assertEquals(120, blobs.get(0).getCenterY(), 4);
+    }
+}
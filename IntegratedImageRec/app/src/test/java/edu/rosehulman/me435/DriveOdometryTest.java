@@ -0,0 +1,132 @@
+package edu.rosehulman.me435;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DriveOdometryTest {
+  private static final double EPSILON = 1e-9;
+  private static final double FULL_SPEED = 3.3;
+
+  private final DriveOdometry mOdometry = new DriveOdometry();
+
+  @Test
+  public void defaultCurveInterpolates() {
+    assertEquals(0, mOdometry.getWheelSpeedFtPerSec(0), EPSILON);
+    // No motion up to the dead band at 30.
+    assertEquals(0, mOdometry.getWheelSpeedFtPerSec(30), EPSILON);
+    assertEquals(FULL_SPEED / 2, mOdometry.getWheelSpeedFtPerSec(142), 0.01);
+    assertEquals(FULL_SPEED * 45 / 225, mOdometry.getWheelSpeedFtPerSec(75), EPSILON);
+    assertEquals(FULL_SPEED, mOdometry.getWheelSpeedFtPerSec(255), EPSILON);
+  }
+
+  @Test
+  public void reverseUsesTheSameCurve() {
+    assertEquals(-FULL_SPEED, mOdometry.getWheelSpeedFtPerSec(-255), EPSILON);
+    assertEquals(-mOdometry.getWheelSpeedFtPerSec(75), mOdometry.getWheelSpeedFtPerSec(-75), EPSILON);
+  }
+
+  @Test
+  public void customCurve() {
+    mOdometry.setSpeedCurve(new int[] {0, 100, 200}, new double[] {0, 1, 3});
+    assertEquals(0.5, mOdometry.getWheelSpeedFtPerSec(50), EPSILON);
+    assertEquals(1, mOdometry.getWheelSpeedFtPerSec(100), EPSILON);
+    assertEquals(2, mOdometry.getWheelSpeedFtPerSec(150), EPSILON);
+    // Past the last point the speed stays at the last measurement.
+    assertEquals(3, mOdometry.getWheelSpeedFtPerSec(255), EPSILON);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void mismatchedCurveIsRejected() {
+    mOdometry.setSpeedCurve(new int[] {0, 255}, new double[] {0});
+  }
+
+  @Test
+  public void straightLine() {
+    mOdometry.setPosition(10, 20);
+    mOdometry.setHeading(90);
+    for (int i = 0; i < 100; i++) {
+      mOdometry.update(255, 255, 0.02);
+    }
+    assertEquals(10, mOdometry.getX(), EPSILON);
+    assertEquals(20 + 2 * FULL_SPEED, mOdometry.getY(), EPSILON);
+    assertEquals(90, mOdometry.getHeading(), EPSILON);
+    assertEquals(FULL_SPEED, mOdometry.getSpeedFtPerSec(), EPSILON);
+    assertEquals(0, mOdometry.getTurnRateDegreesPerSec(), EPSILON);
+  }
+
+  @Test
+  public void quarterTurnInOneStepEndsOnTheArc() {
+    // Right wheel only: turns left at 3.3 rad/s around a point half the track width to the left.
+    double dt = (Math.PI / 2) / FULL_SPEED;
+    mOdometry.update(0, 255, dt);
+    assertEquals(0.5, mOdometry.getX(), EPSILON);
+    assertEquals(0.5, mOdometry.getY(), EPSILON);
+    assertEquals(90, mOdometry.getHeading(), EPSILON);
+    assertEquals(FULL_SPEED / 2, mOdometry.getSpeedFtPerSec(), EPSILON);
+    assertEquals(Math.toDegrees(FULL_SPEED), mOdometry.getTurnRateDegreesPerSec(), EPSILON);
+  }
+
+  @Test
+  public void fullCircleReturnsToTheStart() {
+    mOdometry.setTrackWidthFt(2);
+    mOdometry.setPosition(5, -5);
+    mOdometry.setHeading(30);
+    // Right turn at 1.65 rad/s, so 100 steps make exactly one lap.
+    double dt = 2 * Math.PI / (FULL_SPEED / 2) / 100;
+    for (int i = 0; i < 100; i++) {
+      mOdometry.update(255, 0, dt);
+    }
+    assertEquals(5, mOdometry.getX(), 1e-6);
+    assertEquals(-5, mOdometry.getY(), 1e-6);
+    assertEquals(30, mOdometry.getHeading(), 1e-6);
+  }
+
+  @Test
+  public void spinInPlace() {
+    mOdometry.update(-255, 255, 0.1);
+    assertEquals(0, mOdometry.getX(), EPSILON);
+    assertEquals(0, mOdometry.getY(), EPSILON);
+    assertEquals(0, mOdometry.getSpeedFtPerSec(), EPSILON);
+    // The wheels move in opposite directions, so the turn rate is twice that of one wheel alone.
+    assertEquals(Math.toDegrees(2 * FULL_SPEED * 0.1), mOdometry.getHeading(), EPSILON);
+  }
+
+  @Test
+  public void headingWrapsWhileTurning() {
+    mOdometry.setHeading(170);
+    // 20 degrees to the left.
+    mOdometry.update(0, 255, Math.toRadians(20) / FULL_SPEED);
+    assertEquals(-170, mOdometry.getHeading(), EPSILON);
+  }
+
+  @Test
+  public void zeroTimeStepOnlyUpdatesTheRates() {
+    mOdometry.update(255, 255, 0);
+    assertEquals(0, mOdometry.getX(), EPSILON);
+    assertEquals(0, mOdometry.getY(), EPSILON);
+    assertEquals(FULL_SPEED, mOdometry.getSpeedFtPerSec(), EPSILON);
+  }
+
+  @Test
+  public void correctHeadingTakesTheShortWayAcross180() {
+    mOdometry.setHeading(170);
+    mOdometry.correctHeading(-170, 0.25);
+    assertEquals(175, mOdometry.getHeading(), EPSILON);
+    mOdometry.correctHeading(-170, 0.5);
+    assertEquals(-177.5, mOdometry.getHeading(), EPSILON);
+
+    mOdometry.setHeading(-170);
+    mOdometry.correctHeading(170, 0.5);
+    assertEquals(180, mOdometry.getHeading(), EPSILON);
+  }
+
+  @Test
+  public void correctHeadingWeights() {
+    mOdometry.setHeading(10);
+    mOdometry.correctHeading(50, 0);
+    assertEquals(10, mOdometry.getHeading(), EPSILON);
+    mOdometry.correctHeading(50, 1);
+    assertEquals(50, mOdometry.getHeading(), EPSILON);
+  }
+}
@@ -0,0 +1,66 @@
+package edu.rosehulman.me435;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class DurationHistogramsTest {
+  private final DurationHistograms mHistograms = new DurationHistograms(2);
+
+  @Test
+  public void emptySeriesReportsZero() {
+    assertEquals(0, mHistograms.getCount(0));
+    assertEquals(0, mHistograms.getMeanNs(0), 0);
+    assertEquals(0, mHistograms.getPercentileNs(0, 0.99));
+  }
+
+  @Test
+  public void percentilesAreBucketUpperEdges() {
+    // 90 samples in [512, 1024) and 10 in [65536, 131072).
+    for (int i = 0; i < 90; i++) {
+      mHistograms.record(0, 600);
+    }
+    for (int i = 0; i < 10; i++) {
+      mHistograms.record(0, 70000);
+    }
+    assertEquals(100, mHistograms.getCount(0));
+    assertEquals((90 * 600 + 10 * 70000) / 100.0, mHistograms.getMeanNs(0), 1e-9);
+    assertEquals(1024, mHistograms.getPercentileNs(0, 0.5));
+    assertEquals(1024, mHistograms.getPercentileNs(0, 0.9));
+    // Capped at the largest sample rather than the bucket edge.
+    assertEquals(70000, mHistograms.getPercentileNs(0, 0.99));
+    assertEquals(70000, mHistograms.getMaxNs(0));
+    assertEquals(0, mHistograms.getCount(1));
+  }
+
+  @Test
+  public void outOfRangeDurationsAreClamped() {
+    mHistograms.record(1, -5);
+    mHistograms.record(1, Long.MAX_VALUE);
+    assertEquals(2, mHistograms.getCount(1));
+    assertEquals(Long.MAX_VALUE, mHistograms.getMaxNs(1));
+    assertEquals(2, mHistograms.getPercentileNs(1, 0.5));
+
+    StringWriter text = new StringWriter();
+    PrintWriter writer = new PrintWriter(text);
+    mHistograms.printBuckets(writer, 1);
+    writer.flush();
+    String[] counts = text.toString().trim().substring(1).split(",");
+    assertEquals(DurationHistograms.BUCKETS, counts.length);
+    assertEquals("1", counts[0]);
+    assertEquals("1", counts[DurationHistograms.BUCKETS - 1]);
+  }
+
+  @Test
+  public void resetClearsEverySeries() {
+    mHistograms.record(0, 100);
+    mHistograms.record(1, 100);
+    mHistograms.reset();
+    assertEquals(0, mHistograms.getCount(0));
+    assertEquals(0, mHistograms.getCount(1));
+    assertEquals(0, mHistograms.getMaxNs(1));
+  }
+}
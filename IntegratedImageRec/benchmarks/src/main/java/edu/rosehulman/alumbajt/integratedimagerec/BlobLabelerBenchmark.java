@@ -0,0 +1,55 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BlobLabeler on a 160x120 mask (a 640x480 frame after two pyrDown calls), clean and with speckle
+ * noise that creates many small labels.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BlobLabelerBenchmark {
+    private static final int MASK_WIDTH = SyntheticInputs.FRAME_WIDTH / 4;
+    private static final int MASK_HEIGHT = SyntheticInputs.FRAME_HEIGHT / 4;
+
+    @Param({"0", "0.05"})
+    public double speckleFraction;
+
+    private byte[] mMask;
+    private final BlobLabeler mLabeler = new BlobLabeler();
+    private final double[] mConeResult = new double[3];
+
+    @Setup
+    public void setUp() {
+        mMask = SyntheticInputs.coneMask(MASK_WIDTH, MASK_HEIGHT, speckleFraction);
+    }
+
+    @Benchmark
+    public int label() {
+        mLabeler.label(mMask, MASK_WIDTH, MASK_HEIGHT, 4, 0.1);
+        return mLabeler.getBlobs().size();
+    }
+
+    @Benchmark
+    public boolean labelAndFindCone() {
+        mLabeler.label(mMask, MASK_WIDTH, MASK_HEIGHT, 4, 0.1);
+        return ConeLocator.findConeInBlobs(mLabeler.getBlobs(), 0.001, SyntheticInputs.FRAME_WIDTH,
+                SyntheticInputs.FRAME_HEIGHT, mConeResult);
+    }
+}
@@ -0,0 +1,71 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ColorBlobDetector.process on a fixed synthetic 640x480 cone frame. Needs the desktop OpenCV native
+ * library on java.library.path (see benchmarks/build.gradle).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DetectorBenchmark {
+
+    @Param({"true", "false"})
+    public boolean lookupTable;
+
+    private ColorBlobDetector mDetector;
+    private Mat mFrame;
+    private final double[] mConeResult = new double[3];
+
+    @Setup
+    public void setUp() {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+        mFrame = new Mat(SyntheticInputs.FRAME_HEIGHT, SyntheticInputs.FRAME_WIDTH, CvType.CV_8UC4);
+        mFrame.put(0, 0, SyntheticInputs.coneFrameRgba(SyntheticInputs.FRAME_WIDTH, SyntheticInputs.FRAME_HEIGHT));
+        mDetector = new ColorBlobDetector();
+        mDetector.setLookupTableEnabled(lookupTable);
+        double[] range = SyntheticInputs.CONE_RANGE_HSV;
+        double[] target = SyntheticInputs.CONE_TARGET_HSV;
+        mDetector.setColorRadius(new Scalar(range[0], range[1], range[2], 0));
+        mDetector.setHsvColor(new Scalar(target[0], target[1], target[2]));
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFrame.release();
+    }
+
+    @Benchmark
+    public int process() {
+        mDetector.process(mFrame);
+        return mDetector.getContourStats().size();
+    }
+
+    @Benchmark
+    public boolean processAndFindCone() {
+        mDetector.process(mFrame);
+        return ConeLocator.findCone(mDetector.getContourStats(), 0.001, SyntheticInputs.FRAME_WIDTH,
+                SyntheticInputs.FRAME_HEIGHT, mConeResult);
+    }
+}
@@ -0,0 +1,65 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.opencv.core.Scalar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JavaBlobDetector.process on the same synthetic frame as DetectorBenchmark, at different thread
+ * counts. Plain Java, no native library needed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JavaDetectorBenchmark {
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private JavaBlobDetector mDetector;
+    private byte[] mFrame;
+    private final double[] mConeResult = new double[3];
+
+    @Setup
+    public void setUp() {
+        mFrame = SyntheticInputs.coneFrameRgba(SyntheticInputs.FRAME_WIDTH, SyntheticInputs.FRAME_HEIGHT);
+        mDetector = new JavaBlobDetector(threads);
+        double[] range = SyntheticInputs.CONE_RANGE_HSV;
+        double[] target = SyntheticInputs.CONE_TARGET_HSV;
+        mDetector.setColorRadius(new Scalar(range[0], range[1], range[2], 0));
+        mDetector.setHsvColor(new Scalar(target[0], target[1], target[2]));
+    }
+
+    @TearDown
+    public void tearDown() {
+        mDetector.shutdown();
+    }
+
+    @Benchmark
+    public int process() {
+        mDetector.process(mFrame, SyntheticInputs.FRAME_WIDTH, SyntheticInputs.FRAME_HEIGHT);
+        return mDetector.getBlobs().size();
+    }
+
+    @Benchmark
+    public boolean processAndFindCone() {
+        mDetector.process(mFrame, SyntheticInputs.FRAME_WIDTH, SyntheticInputs.FRAME_HEIGHT);
+        return ConeLocator.findConeInBlobs(mDetector.getBlobs(), 0.001, SyntheticInputs.FRAME_WIDTH,
+                SyntheticInputs.FRAME_HEIGHT, mConeResult);
+    }
+}
@@ -0,0 +1,87 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One MultiColorBlobDetector against one ColorBlobDetector per target, on a frame with a disc of
+ * every target color, as the number of targets grows. The multi-color detector runs pyrDown,
+ * cvtColor, the bit sweep, the dilate and the labeling once for all targets, so only the matched
+ * runs add per target work. MultiTargetLabelingBenchmark times the Java part on its own. Needs the
+ * desktop OpenCV native library on java.library.path (see benchmarks/build.gradle).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MultiColorBenchmark {
+
+    @Param({"1", "2", "4", "6"})
+    public int targets;
+
+    private MultiColorBlobDetector mMultiDetector;
+    private ColorBlobDetector[] mDetectors;
+    private Mat mFrame;
+
+    @Setup
+    public void setUp() {
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+        mFrame = new Mat(SyntheticInputs.FRAME_HEIGHT, SyntheticInputs.FRAME_WIDTH, CvType.CV_8UC4);
+        mFrame.put(0, 0, SyntheticInputs.colorDiscsFrameRgba(SyntheticInputs.FRAME_WIDTH, SyntheticInputs.FRAME_HEIGHT));
+        double[] range = SyntheticInputs.DISC_RANGE_HSV;
+        Scalar radius = new Scalar(range[0], range[1], range[2], 0);
+        mMultiDetector = new MultiColorBlobDetector();
+        mDetectors = new ColorBlobDetector[targets];
+        for (int k = 0; k < targets; k++) {
+            Scalar target = new Scalar(SyntheticInputs.DISC_HUES[k], 255, 255);
+            mMultiDetector.addTarget(target, radius);
+            mDetectors[k] = new ColorBlobDetector();
+            mDetectors[k].setLookupTableEnabled(false);
+            mDetectors[k].setColorRadius(radius);
+            mDetectors[k].setHsvColor(target);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFrame.release();
+    }
+
+    @Benchmark
+    public int multiColorDetector() {
+        mMultiDetector.process(mFrame);
+        int blobs = 0;
+        for (int k = 0; k < targets; k++) {
+            blobs += mMultiDetector.getBlobs(k).size();
+        }
+        return blobs;
+    }
+
+    @Benchmark
+    public int detectorPerTarget() {
+        int contours = 0;
+        for (int k = 0; k < targets; k++) {
+            mDetectors[k].process(mFrame);
+            contours += mDetectors[k].getContourStats().size();
+        }
+        return contours;
+    }
+}
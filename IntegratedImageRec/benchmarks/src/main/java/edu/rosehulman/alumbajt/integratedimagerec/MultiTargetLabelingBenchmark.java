@@ -0,0 +1,74 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The part of MultiColorBlobDetector after the HSV conversion, in plain Java: one dilateBits and
+ * labelBits pass over the per pixel target bits, against pulling out one mask per target and
+ * dilating and labeling each of them. Runs on the 160x120 disc frame (one disc per target color).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MultiTargetLabelingBenchmark {
+    private static final int MASK_WIDTH = SyntheticInputs.FRAME_WIDTH / 4;
+    private static final int MASK_HEIGHT = SyntheticInputs.FRAME_HEIGHT / 4;
+
+    @Param({"1", "2", "4", "6"})
+    public int targets;
+
+    private int[] mBits;
+    private int[] mDilatedBits;
+    private byte[] mMask;
+    private byte[] mDilatedMask;
+    private final BlobLabeler mLabeler = new BlobLabeler();
+
+    @Setup
+    public void setUp() {
+        mBits = SyntheticInputs.colorDiscsBits(MASK_WIDTH, MASK_HEIGHT, targets);
+        mDilatedBits = new int[mBits.length];
+        mMask = new byte[mBits.length];
+        mDilatedMask = new byte[mBits.length];
+    }
+
+    @Benchmark
+    public int allTargets() {
+        BlobLabeler.dilateBits(mBits, mDilatedBits, MASK_WIDTH, MASK_HEIGHT);
+        mLabeler.labelBits(mDilatedBits, MASK_WIDTH, MASK_HEIGHT, targets, 4, 0.1);
+        int blobs = 0;
+        for (int k = 0; k < targets; k++) {
+            blobs += mLabeler.getBlobs(k).size();
+        }
+        return blobs;
+    }
+
+    @Benchmark
+    public int maskPerTarget() {
+        int blobs = 0;
+        for (int k = 0; k < targets; k++) {
+            int bit = 1 << k;
+            for (int i = 0; i < mBits.length; i++) {
+                mMask[i] = (mBits[i] & bit) != 0 ? (byte) 255 : 0;
+            }
+            BlobLabeler.dilate(mMask, mDilatedMask, MASK_WIDTH, MASK_HEIGHT, 0, MASK_HEIGHT);
+            mLabeler.label(mDilatedMask, MASK_WIDTH, MASK_HEIGHT, 4, 0.1);
+            blobs += mLabeler.getBlobs().size();
+        }
+        return blobs;
+    }
+}
@@ -0,0 +1,166 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.opencv.core.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fixed, seeded inputs for the benchmarks so results can be compared across commits.
+ */
+class SyntheticInputs {
+    static final int FRAME_WIDTH = 640;
+    static final int FRAME_HEIGHT = 480;
+    // Default cone target from ImageRecActivity (full range hue).
+    static final double[] CONE_TARGET_HSV = {10, 255, 255};
+    static final double[] CONE_RANGE_HSV = {25, 50, 50};
+
+    private static final long SEED = 435;
+
+    // Saturated colors six hue steps apart (red, yellow, green, cyan, blue, magenta), with their
+    // full range hue, for the multi-target benchmarks.
+    static final int[][] DISC_RGB = {
+            {255, 0, 0}, {255, 255, 0}, {0, 255, 0}, {0, 255, 255}, {0, 0, 255}, {255, 0, 255}};
+    static final double[] DISC_HUES = {0, 43, 85, 128, 170, 213};
+    static final double[] DISC_RANGE_HSV = {10, 50, 50};
+
+    /**
+     * RGBA frame with a noisy grass colored background and one orange elliptical cone.
+     */
+    static byte[] coneFrameRgba(int width, int height) {
+        Random random = new Random(SEED);
+        byte[] rgba = new byte[width * height * 4];
+        double cx = width * 0.6, cy = height * 0.45, rx = width * 0.08, ry = height * 0.2;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int p = (y * width + x) * 4;
+                double dx = (x - cx) / rx, dy = (y - cy) / ry;
+                int noise = random.nextInt(24) - 12;
+                if (dx * dx + dy * dy <= 1.0) {
+                    rgba[p] = (byte) clamp(250 + noise);
+                    rgba[p + 1] = (byte) clamp(60 + noise);
+                    rgba[p + 2] = (byte) clamp(10 + noise);
+                } else {
+                    rgba[p] = (byte) clamp(70 + noise);
+                    rgba[p + 1] = (byte) clamp(120 + noise);
+                    rgba[p + 2] = (byte) clamp(60 + noise);
+                }
+                rgba[p + 3] = (byte) 255;
+            }
+        }
+        return rgba;
+    }
+
+    /**
+     * RGBA frame with the same noisy grass background as coneFrameRgba and one disc of each
+     * DISC_RGB color spaced along the middle row.
+     */
+    static byte[] colorDiscsFrameRgba(int width, int height) {
+        Random random = new Random(SEED);
+        byte[] rgba = new byte[width * height * 4];
+        double spacing = (double) width / DISC_RGB.length;
+        double radius = spacing * 0.35;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int p = (y * width + x) * 4;
+                int disc = (int) (x / spacing);
+                double dx = x - (disc + 0.5) * spacing, dy = y - height / 2.0;
+                int noise = random.nextInt(24) - 12;
+                int[] color = dx * dx + dy * dy <= radius * radius ? DISC_RGB[disc] : null;
+                rgba[p] = (byte) clamp((color == null ? 70 : color[0]) + noise);
+                rgba[p + 1] = (byte) clamp((color == null ? 120 : color[1]) + noise);
+                rgba[p + 2] = (byte) clamp((color == null ? 60 : color[2]) + noise);
+                rgba[p + 3] = (byte) 255;
+            }
+        }
+        return rgba;
+    }
+
+    /**
+     * Target bits (bit k for DISC_HUES[k] within DISC_RANGE_HSV) of the colorDiscsFrameRgba frame,
+     * sampled at every fourth pixel like a mask after two pyrDown calls.
+     */
+    static int[] colorDiscsBits(int maskWidth, int maskHeight, int targets) {
+        int width = maskWidth * 4;
+        byte[] rgba = colorDiscsFrameRgba(width, maskHeight * 4);
+        int[] bits = new int[maskWidth * maskHeight];
+        int[] hsv = new int[3];
+        for (int y = 0; y < maskHeight; y++) {
+            for (int x = 0; x < maskWidth; x++) {
+                int p = (y * 4 * width + x * 4) * 4;
+                ColorLookupTable.rgbToHsvFull(rgba[p] & 0xFF, rgba[p + 1] & 0xFF, rgba[p + 2] & 0xFF, hsv);
+                for (int k = 0; k < targets; k++) {
+                    if (Math.abs(hsv[0] - DISC_HUES[k]) <= DISC_RANGE_HSV[0]
+                            && hsv[1] >= 255 - DISC_RANGE_HSV[1] && hsv[2] >= 255 - DISC_RANGE_HSV[2]) {
+                        bits[y * maskWidth + x] |= 1 << k;
+                    }
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Quarter size mask (like the detectors' mask after two pyrDown calls) with one elliptical cone
+     * and the given fraction of single pixel speckles.
+     */
+    static byte[] coneMask(int width, int height, double speckleFraction) {
+        Random random = new Random(SEED);
+        byte[] mask = new byte[width * height];
+        double cx = width * 0.6, cy = height * 0.45, rx = width * 0.08, ry = height * 0.2;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double dx = (x - cx) / rx, dy = (y - cy) / ry;
+                boolean set = dx * dx + dy * dy <= 1.0 || random.nextDouble() < speckleFraction;
+                mask[y * width + x] = set ? (byte) 255 : 0;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Interleaved x, y points of an ellipse, like a CHAIN_APPROX_SIMPLE contour of a cone.
+     */
+    static int[] ellipseContour(int points, double cx, double cy, double rx, double ry) {
+        int[] xy = new int[points * 2];
+        for (int i = 0; i < points; i++) {
+            double angle = 2 * Math.PI * i / points;
+            xy[2 * i] = (int) Math.round(cx + rx * Math.cos(angle));
+            xy[2 * i + 1] = (int) Math.round(cy + ry * Math.sin(angle));
+        }
+        return xy;
+    }
+
+    static Point[] toPoints(int[] xy, int points) {
+        Point[] pts = new Point[points];
+        for (int i = 0; i < points; i++) {
+            pts[i] = new Point(xy[2 * i], xy[2 * i + 1]);
+        }
+        return pts;
+    }
+
+    /**
+     * Stats for a handful of blobs of different sizes, as the detector would report them.
+     */
+    static List<ContourStats> contourStats(int count) {
+        Random random = new Random(SEED);
+        List<ContourStats> statsList = new ArrayList<ContourStats>();
+        for (int i = 0; i < count; i++) {
+            double rx = 5 + random.nextInt(60);
+            double ry = 5 + random.nextInt(120);
+            double cx = rx + random.nextInt((int) (FRAME_WIDTH - 2 * rx));
+            double cy = ry + random.nextInt((int) (FRAME_HEIGHT - 2 * ry));
+            int[] xy = ellipseContour(64, cx, cy, rx, ry);
+            ContourStats stats = new ContourStats();
+            ContourStats.computeMoments(xy, 64, stats.moments, stats.boundingBox);
+            stats.area = Math.abs(stats.moments.m00);
+            statsList.add(stats);
+        }
+        return statsList;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
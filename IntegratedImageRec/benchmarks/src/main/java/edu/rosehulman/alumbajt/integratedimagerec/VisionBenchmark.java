@@ -0,0 +1,67 @@
+package edu.rosehulman.alumbajt.integratedimagerec;
+
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.imgproc.Moments;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pure Java vision hot paths: contour moments (int[] and the reference Point[] version) and the
+ * findCone math on detector output.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VisionBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int contourPoints;
+
+    private int[] mContourXy;
+    private Point[] mContourPoints;
+    private final Moments mMoments = new Moments();
+    private final Rect mBounds = new Rect();
+    private List<ContourStats> mContourStats;
+    private final double[] mConeResult = new double[3];
+
+    @Setup
+    public void setUp() {
+        mContourXy = SyntheticInputs.ellipseContour(contourPoints, 320, 240, 50, 110);
+        mContourPoints = SyntheticInputs.toPoints(mContourXy, contourPoints);
+        mContourStats = SyntheticInputs.contourStats(8);
+    }
+
+    @Benchmark
+    public Moments contourMomentsInts() {
+        ContourStats.computeMoments(mContourXy, contourPoints, mMoments, mBounds);
+        return mMoments;
+    }
+
+    @Benchmark
+    public Moments contourMomentsPoints() {
+        ContourStats.computeMoments(mContourPoints, contourPoints, mMoments, mBounds);
+        return mMoments;
+    }
+
+    @Benchmark
+    public boolean findCone() {
+        return ConeLocator.findCone(mContourStats, 0.001, SyntheticInputs.FRAME_WIDTH,
+                SyntheticInputs.FRAME_HEIGHT, mConeResult);
+    }
+}
@@ -0,0 +1,66 @@
+package edu.rosehulman.me435;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Navigation math run every loop or GPS fix: arc radius, GPS to field coordinates and building the
+ * wheel speed command. Inputs are fixed field positions so results compare across commits.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NavigationBenchmark {
+  // Red and blue home bases from RobotActivity, and a point near the middle of the field.
+  private static final double RED_HOME_LATITUDE = 39.485297;
+  private static final double RED_HOME_LONGITUDE = -87.325922;
+  private static final double BLUE_HOME_LATITUDE = 39.485549;
+  private static final double BLUE_HOME_LONGITUDE = -87.324796;
+  private static final double MID_FIELD_LATITUDE = 39.485480;
+  private static final double MID_FIELD_LONGITUDE = -87.325350;
+
+  private final double[] mArcResult = new double[2];
+  private final double[] mFieldResult = new double[3];
+  private final float[] mDistanceResult = new float[2];
+  // Not final so the JIT cannot fold the command into a constant.
+  private int mLeftDutyCycle = 200;
+  private int mRightDutyCycle = -75;
+
+  @Benchmark
+  public boolean calculateArc() {
+    return NavUtils.calculateArc(50.0, 30.0, 135.0, 240.0, 50.0, mArcResult);
+  }
+
+  @Benchmark
+  public float[] distanceAndBearing() {
+    FieldGpsMath.distanceAndBearing(RED_HOME_LATITUDE, RED_HOME_LONGITUDE, MID_FIELD_LATITUDE,
+        MID_FIELD_LONGITUDE, mDistanceResult);
+    return mDistanceResult;
+  }
+
+  /** The math in FieldGps.dispatchOnLocationChangedEvent. */
+  @Benchmark
+  public double[] toFieldCoordinates() {
+    FieldGpsMath.toFieldCoordinates(RED_HOME_LATITUDE, RED_HOME_LONGITUDE, BLUE_HOME_LATITUDE,
+        BLUE_HOME_LONGITUDE, MID_FIELD_LATITUDE, MID_FIELD_LONGITUDE, mFieldResult);
+    return mFieldResult;
+  }
+
+  /** The command string building in RobotActivity.sendWheelSpeed. */
+  @Benchmark
+  public String wheelSpeedCommand() {
+    return WheelSpeedCommand.build(mLeftDutyCycle, mRightDutyCycle);
+  }
+}
@@ -20,6 +20,7 @@ import android.util.AttributeSet;
 import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
+import android.view.View;
 
 /**
  * This is a basic class, implementing the interaction with Camera and OpenCV library.
@@ -32,6 +33,8 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
 
     private static final String TAG = "CameraBridge";
     private static final int MAX_UNSPECIFIED = -1;
+    /** Passed to setMinFrameSize() to go back to the biggest size that fits. */
+    public static final int MIN_UNSPECIFIED = -1;
     private static final int STOPPED = 0;
     private static final int STARTED = 1;
 
@@ -45,18 +48,33 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     protected int mFrameHeight;
     protected int mMaxHeight;
     protected int mMaxWidth;
+    protected int mMinHeight = MIN_UNSPECIFIED;
+    protected int mMinWidth = MIN_UNSPECIFIED;
     protected float mScale = 0;
     protected int mPreviewFormat = RGBA;
     protected int mCameraIndex = CAMERA_ID_ANY;
     protected boolean mEnabled;
     protected FpsMeter mFpsMeter = null;
 
+    private volatile int mRenderPolicy = RENDER_ALWAYS;
+    private volatile int mRenderInterval = 1;
+    private volatile boolean mViewShown = true;
+    private int mRenderFrameCount = 0;
+    private boolean mRenderThisFrame = true;
+
     public static final int CAMERA_ID_ANY   = -1;
     public static final int CAMERA_ID_BACK  = 99;
     public static final int CAMERA_ID_FRONT = 98;
     public static final int RGBA = 1;
     public static final int GRAY = 2;
 
+    /** Convert and draw every frame (the default). */
+    public static final int RENDER_ALWAYS = 0;
+    /** Convert and draw one frame out of every setRenderInterval() frames. */
+    public static final int RENDER_EVERY_NTH_FRAME = 1;
+    /** Convert and draw every frame while the view is shown, nothing while it (or a parent) is hidden. */
+    public static final int RENDER_NEVER_WHILE_HIDDEN = 2;
+
     public CameraBridgeViewBase(Context context, int cameraId) {
         super(context);
         mCameraIndex = cameraId;
@@ -189,6 +207,18 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
          * This method returns single channel gray scale Mat with frame
          */
         public Mat gray();
+
+        /**
+         * This method returns the raw NV21 (YUV420sp) frame data as a single channel Mat with
+         * height * 3 / 2 rows, without any color conversion
+         */
+        public Mat yuv();
+
+        /**
+         * This method returns the System.nanoTime() value taken when the camera handed over
+         * the frame, so latency can be measured from the moment of capture
+         */
+        public long captureTimeNs();
     };
 
     public void surfaceChanged(SurfaceHolder arg0, int arg1, int arg2, int arg3) {
@@ -256,6 +286,64 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
             mFpsMeter = null;
     }
 
+    /**
+     * This method selects when delivered frames are converted to a bitmap and drawn on the surface.
+     * Frames are always delivered to the listener at the full camera rate, only the matToBitmap and
+     * canvas work is skipped.
+     * @param policy - RENDER_ALWAYS, RENDER_EVERY_NTH_FRAME or RENDER_NEVER_WHILE_HIDDEN
+     */
+    public void setRenderPolicy(int policy) {
+        mRenderPolicy = policy;
+    }
+
+    public int getRenderPolicy() {
+        return mRenderPolicy;
+    }
+
+    /**
+     * This method sets N for the RENDER_EVERY_NTH_FRAME policy.
+     * @param interval - draw one frame out of this many, 1 draws every frame
+     */
+    public void setRenderInterval(int interval) {
+        mRenderInterval = Math.max(1, interval);
+    }
+
+    /**
+     * This method can be called from onCameraFrame() to find out whether the frame being delivered
+     * will be drawn, so listeners can skip color conversion or overlays nobody will see.
+     */
+    public boolean isRenderingFrame() {
+        return mRenderThisFrame;
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        /* Called for changes to this view or any parent (like a ViewFlipper switching children) */
+        mViewShown = isShown();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        mViewShown = isShown();
+    }
+
+    private boolean shouldRenderFrame() {
+        switch (mRenderPolicy) {
+        case RENDER_EVERY_NTH_FRAME:
+            if (++mRenderFrameCount >= mRenderInterval) {
+                mRenderFrameCount = 0;
+                return true;
+            }
+            return false;
+        case RENDER_NEVER_WHILE_HIDDEN:
+            return mViewShown;
+        default:
+            return true;
+        }
+    }
+
     /**
      *
      * @param listener
@@ -285,6 +373,22 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
         mMaxHeight = maxHeight;
     }
 
+    /**
+     * This method sets the smallest size the consumer of the frames needs. When it is set the
+     * smallest supported size that is at least this big (and still fits the maximum size and the
+     * surface) is selected, instead of the biggest one.
+     * As an example - a detector that shrinks every frame to 160x120 can call setMinFrameSize(640, 480)
+     * and get 640x480 frames instead of 1920x1080 ones, which makes every copy, conversion and
+     * drawn bitmap smaller.
+     * If no supported size is big enough the biggest one that fits is used, as without this call.
+     * @param minWidth - the minimum width needed, or MIN_UNSPECIFIED.
+     * @param minHeight - the minimum height needed, or MIN_UNSPECIFIED.
+     */
+    public void setMinFrameSize(int minWidth, int minHeight) {
+        mMinWidth = minWidth;
+        mMinHeight = minHeight;
+    }
+
     public void SetCaptureFormat(int format)
     {
         mPreviewFormat = format;
@@ -389,10 +493,16 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     protected void deliverAndDrawFrame(CvCameraViewFrame frame) {
         Mat modified;
 
+        mRenderThisFrame = shouldRenderFrame();
         if (mListener != null) {
             modified = mListener.onCameraFrame(frame);
         } else {
-            modified = frame.rgba();
+            modified = mRenderThisFrame ? frame.rgba() : null;
+        }
+
+        if (!mRenderThisFrame) {
+            /* Headless frame: the listener has it, skip the bitmap conversion and drawing */
+            return;
         }
 
         boolean bmpValid = true;
@@ -465,7 +575,9 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     /**
      * This helper method can be called by subclasses to select camera preview size.
      * It goes over the list of the supported preview sizes and selects the maximum one which
-     * fits both values set via setMaxFrameSize() and surface frame allocated for this view
+     * fits both values set via setMaxFrameSize() and surface frame allocated for this view.
+     * When setMinFrameSize() was called the smallest of those sizes that meets the minimum is
+     * selected instead.
      * @param supportedSizes
      * @param surfaceWidth
      * @param surfaceHeight
@@ -474,9 +586,14 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     protected Size calculateCameraFrameSize(List<?> supportedSizes, ListItemAccessor accessor, int surfaceWidth, int surfaceHeight) {
         int calcWidth = 0;
         int calcHeight = 0;
+        int minWidth = 0;
+        int minHeight = 0;
 
         int maxAllowedWidth = (mMaxWidth != MAX_UNSPECIFIED && mMaxWidth < surfaceWidth)? mMaxWidth : surfaceWidth;
         int maxAllowedHeight = (mMaxHeight != MAX_UNSPECIFIED && mMaxHeight < surfaceHeight)? mMaxHeight : surfaceHeight;
+        int minNeededWidth = (mMinWidth != MIN_UNSPECIFIED) ? mMinWidth : 0;
+        int minNeededHeight = (mMinHeight != MIN_UNSPECIFIED) ? mMinHeight : 0;
+        boolean useMinimum = mMinWidth != MIN_UNSPECIFIED || mMinHeight != MIN_UNSPECIFIED;
 
         for (Object size : supportedSizes) {
             int width = accessor.getWidth(size);
@@ -487,9 +604,18 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
                     calcWidth = (int) width;
                     calcHeight = (int) height;
                 }
+                if (useMinimum && width >= minNeededWidth && height >= minNeededHeight) {
+                    if (minWidth == 0 || width * height < minWidth * minHeight) {
+                        minWidth = width;
+                        minHeight = height;
+                    }
+                }
             }
         }
 
+        if (minWidth != 0) {
+            return new Size(minWidth, minHeight);
+        }
         return new Size(calcWidth, calcHeight);
     }
 }
@@ -1,6 +1,9 @@
 package org.opencv.android;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import android.content.Context;
 import android.graphics.ImageFormat;
@@ -32,10 +35,25 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
     private static final String TAG = "JavaCameraView";
 
     private byte mBuffer[];
+    /*
+     * Triple buffer between the camera callback (producer) and the CameraWorker (consumer). The
+     * producer owns mWriteIdx and the consumer owns mReadIdx, the third slot is parked in
+     * mMiddleSlot together with FRESH_FRAME when it holds a frame the consumer has not taken yet.
+     * Both sides swap their slot with the middle one in a single getAndSet, so neither ever waits
+     * on the other and the consumer always gets the newest complete frame.
+     */
+    private static final int FRAME_SLOTS = 3;
+    private static final int SLOT_MASK = 0x3;
+    private static final int FRESH_FRAME = 0x4;
     private Mat[] mFrameChain;
-    private int mChainIdx = 0;
-    private Thread mThread;
-    private boolean mStopThread;
+    private int mWriteIdx = 0;
+    private int mReadIdx = 1;
+    private final AtomicInteger mMiddleSlot = new AtomicInteger(2);
+    private final AtomicLong mCapturedFrames = new AtomicLong();
+    private final AtomicLong mDroppedFrames = new AtomicLong();
+    private final AtomicLong mDeliveredFrames = new AtomicLong();
+    private volatile Thread mThread;
+    private volatile boolean mStopThread;
 
     protected Camera mCamera;
     protected JavaCameraFrame[] mCameraFrame;
@@ -179,15 +197,17 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
                     mCamera.addCallbackBuffer(mBuffer);
                     mCamera.setPreviewCallbackWithBuffer(this);
 
-                    mFrameChain = new Mat[2];
-                    mFrameChain[0] = new Mat(mFrameHeight + (mFrameHeight/2), mFrameWidth, CvType.CV_8UC1);
-                    mFrameChain[1] = new Mat(mFrameHeight + (mFrameHeight/2), mFrameWidth, CvType.CV_8UC1);
+                    mFrameChain = new Mat[FRAME_SLOTS];
+                    mCameraFrame = new JavaCameraFrame[FRAME_SLOTS];
+                    for (int i = 0; i < FRAME_SLOTS; i++) {
+                        mFrameChain[i] = new Mat(mFrameHeight + (mFrameHeight/2), mFrameWidth, CvType.CV_8UC1);
+                    }
 
                     AllocateCache();
 
-                    mCameraFrame = new JavaCameraFrame[2];
-                    mCameraFrame[0] = new JavaCameraFrame(mFrameChain[0], mFrameWidth, mFrameHeight);
-                    mCameraFrame[1] = new JavaCameraFrame(mFrameChain[1], mFrameWidth, mFrameHeight);
+                    for (int i = 0; i < FRAME_SLOTS; i++) {
+                        mCameraFrame[i] = new JavaCameraFrame(mFrameChain[i], mFrameWidth, mFrameHeight);
+                    }
 
                     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
                         mSurfaceTexture = new SurfaceTexture(MAGIC_TEXTURE_ID);
@@ -220,17 +240,37 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
             }
             mCamera = null;
             if (mFrameChain != null) {
-                mFrameChain[0].release();
-                mFrameChain[1].release();
+                for (Mat frame : mFrameChain)
+                    frame.release();
             }
             if (mCameraFrame != null) {
-                mCameraFrame[0].release();
-                mCameraFrame[1].release();
+                for (JavaCameraFrame frame : mCameraFrame)
+                    frame.release();
             }
         }
     }
 
-    private boolean mCameraFrameReady = false;
+    /**
+     * Number of preview frames received from the camera since the camera was connected.
+     */
+    public long getCapturedFrameCount() {
+        return mCapturedFrames.get();
+    }
+
+    /**
+     * Number of preview frames that were replaced by a newer one before the worker thread got to
+     * them (the listener was slower than the camera).
+     */
+    public long getDroppedFrameCount() {
+        return mDroppedFrames.get();
+    }
+
+    /**
+     * Number of frames handed to the listener since the camera was connected.
+     */
+    public long getDeliveredFrameCount() {
+        return mDeliveredFrames.get();
+    }
 
     @Override
     protected boolean connectCamera(int width, int height) {
@@ -240,11 +280,15 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
          */
         /* First step - initialize camera connection */
         Log.d(TAG, "Connecting to camera");
+        mWriteIdx = 0;
+        mReadIdx = 1;
+        mMiddleSlot.set(2);
+        mCapturedFrames.set(0);
+        mDroppedFrames.set(0);
+        mDeliveredFrames.set(0);
         if (!initializeCamera(width, height))
             return false;
 
-        mCameraFrameReady = false;
-
         /* now we can start update thread */
         Log.d(TAG, "Starting processing thread");
         mStopThread = false;
@@ -263,12 +307,12 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
         try {
             mStopThread = true;
             Log.d(TAG, "Notify thread");
-            synchronized (this) {
-                this.notify();
-            }
+            Thread thread = mThread;
+            if (thread != null)
+                LockSupport.unpark(thread);
             Log.d(TAG, "Wating for thread");
-            if (mThread != null)
-                mThread.join();
+            if (thread != null)
+                thread.join();
         } catch (InterruptedException e) {
             e.printStackTrace();
         } finally {
@@ -277,18 +321,23 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
 
         /* Now release camera */
         releaseCamera();
-
-        mCameraFrameReady = false;
     }
 
     @Override
     public void onPreviewFrame(byte[] frame, Camera arg1) {
+        long captureTimeNs = System.nanoTime();
         Log.d(TAG, "Preview Frame received. Frame size: " + frame.length);
-        synchronized (this) {
-            mFrameChain[mChainIdx].put(0, 0, frame);
-            mCameraFrameReady = true;
-            this.notify();
-        }
+        mFrameChain[mWriteIdx].put(0, 0, frame);
+        mCameraFrame[mWriteIdx].mCaptureTimeNs = captureTimeNs;
+        // Publish the written slot and take back whichever one was parked in the middle.
+        int previous = mMiddleSlot.getAndSet(mWriteIdx | FRESH_FRAME);
+        mWriteIdx = previous & SLOT_MASK;
+        mCapturedFrames.incrementAndGet();
+        if ((previous & FRESH_FRAME) != 0)
+            mDroppedFrames.incrementAndGet();
+        Thread thread = mThread;
+        if (thread != null)
+            LockSupport.unpark(thread);
         if (mCamera != null)
             mCamera.addCallbackBuffer(mBuffer);
     }
@@ -299,12 +348,22 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
             return mYuvFrameData.submat(0, mHeight, 0, mWidth);
         }
 
+        @Override
+        public Mat yuv() {
+            return mYuvFrameData;
+        }
+
         @Override
         public Mat rgba() {
             Imgproc.cvtColor(mYuvFrameData, mRgba, Imgproc.COLOR_YUV2RGBA_NV21, 4);
             return mRgba;
         }
 
+        @Override
+        public long captureTimeNs() {
+            return mCaptureTimeNs;
+        }
+
         public JavaCameraFrame(Mat Yuv420sp, int width, int height) {
             super();
             mWidth = width;
@@ -321,6 +380,7 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
         private Mat mRgba;
         private int mWidth;
         private int mHeight;
+        private long mCaptureTimeNs;
     };
 
     private class CameraWorker implements Runnable {
@@ -328,22 +388,17 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
         @Override
         public void run() {
             do {
-                synchronized (JavaCameraView.this) {
-                    try {
-                        while (!mCameraFrameReady && !mStopThread) {
-                            JavaCameraView.this.wait();
-                        }
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                    if (mCameraFrameReady)
-                        mChainIdx = 1 - mChainIdx;
+                if ((mMiddleSlot.get() & FRESH_FRAME) == 0) {
+                    // Nothing new yet, onPreviewFrame unparks this thread after each frame.
+                    LockSupport.park(JavaCameraView.this);
+                    continue;
                 }
+                // Take the newest frame and leave the old read slot for the producer.
+                mReadIdx = mMiddleSlot.getAndSet(mReadIdx) & SLOT_MASK;
 
-                if (!mStopThread && mCameraFrameReady) {
-                    mCameraFrameReady = false;
-                    if (!mFrameChain[1 - mChainIdx].empty())
-                        deliverAndDrawFrame(mCameraFrame[1 - mChainIdx]);
+                if (!mStopThread && !mFrameChain[mReadIdx].empty()) {
+                    deliverAndDrawFrame(mCameraFrame[mReadIdx]);
+                    mDeliveredFrames.incrementAndGet();
                 }
             } while (!mStopThread);
             Log.d(TAG, "Finish processing thread");